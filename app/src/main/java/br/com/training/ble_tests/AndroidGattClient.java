@@ -0,0 +1,143 @@
+package br.com.training.ble_tests;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCallback;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.content.Context;
+import android.util.Log;
+
+import java.util.UUID;
+
+/**
+ * {@link GattClient} backed by the platform {@code BluetoothGatt}.
+ */
+public class AndroidGattClient implements GattClient {
+    private final static String LOG = "AndroidGattClient";
+
+    private final String mAddress;
+    private final Callback mCallback;
+    // Set from the callbacks as well, which may run before connectGatt() returns.
+    private volatile BluetoothGatt mBluetoothGatt;
+
+    private AndroidGattClient(String address, Callback callback) {
+        mAddress = address;
+        mCallback = callback;
+    }
+
+    private final BluetoothGattCallback mGattCallback = new BluetoothGattCallback() {
+        @Override
+        public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
+            mBluetoothGatt = gatt;
+            mCallback.onConnectionStateChange(AndroidGattClient.this, status, newState);
+        }
+
+        @Override
+        public void onServicesDiscovered(BluetoothGatt gatt, int status) {
+            mBluetoothGatt = gatt;
+            mCallback.onServicesDiscovered(AndroidGattClient.this, status);
+        }
+
+        @Override
+        public void onCharacteristicRead(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
+            mCallback.onCharacteristicRead(AndroidGattClient.this, characteristic.getUuid(), characteristic.getValue(), status);
+        }
+
+        @Override
+        public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
+            mCallback.onCharacteristicChanged(AndroidGattClient.this, characteristic.getUuid(), characteristic.getValue());
+        }
+    };
+
+    @Override
+    public String getAddress() {
+        return mAddress;
+    }
+
+    @Override
+    public boolean connect() {
+        return mBluetoothGatt.connect();
+    }
+
+    @Override
+    public boolean discoverServices() {
+        return mBluetoothGatt.discoverServices();
+    }
+
+    @Override
+    public boolean setCharacteristicNotification(UUID service, UUID characteristic, byte[] descriptorValue, boolean enabled) {
+        final BluetoothGattService gattService = mBluetoothGatt.getService(service);
+        if (gattService == null) {
+            Log.w(LOG, "Service not found: " + service);
+            return false;
+        }
+
+        final BluetoothGattCharacteristic gattCharacteristic = gattService.getCharacteristic(characteristic);
+        if (gattCharacteristic == null) {
+            Log.w(LOG, "Characteristic not found: " + characteristic);
+            return false;
+        }
+
+        return setCharacteristicNotification(gattCharacteristic, descriptorValue, enabled);
+    }
+
+    /**
+     * Enables or disables notification on a give characteristic.
+     *
+     * @param characteristic Characteristic to act on.
+     * @param descriptorValue BluetoothGattDescriptor.ENABLE_INDICATION_VALUE || BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE
+     * @param enabled If true, enable notification.  False otherwise.
+     * @return true if the request was sent.
+     */
+    boolean setCharacteristicNotification(BluetoothGattCharacteristic characteristic, byte[] descriptorValue, boolean enabled) {
+        mBluetoothGatt.setCharacteristicNotification(characteristic, enabled);
+
+        final BluetoothGattDescriptor descriptor = characteristic.getDescriptor(UUID.fromString(GattAttributes.CLIENT_CHARACTERISTIC_CONFIG));
+        if (descriptor == null) return true;
+
+        descriptor.setValue(descriptorValue);
+        return mBluetoothGatt.writeDescriptor(descriptor);
+    }
+
+    @Override
+    public void disconnect() {
+        mBluetoothGatt.disconnect();
+    }
+
+    @Override
+    public void close() {
+        mBluetoothGatt.close();
+    }
+
+    public BluetoothGatt getBluetoothGatt() {
+        return mBluetoothGatt;
+    }
+
+    /**
+     * Opens {@link AndroidGattClient}s through a {@code BluetoothAdapter}.
+     */
+    public static class Factory implements GattClient.Factory {
+        private final Context mContext;
+        private final BluetoothAdapter mBluetoothAdapter;
+
+        public Factory(Context context, BluetoothAdapter bluetoothAdapter) {
+            mContext = context;
+            mBluetoothAdapter = bluetoothAdapter;
+        }
+
+        @Override
+        public GattClient open(String address, Callback callback) {
+            final BluetoothDevice device = mBluetoothAdapter.getRemoteDevice(address);
+            if (device == null) return null;
+
+            final AndroidGattClient client = new AndroidGattClient(address, callback);
+            // The callbacks may fire before connectGatt() returns; they set mBluetoothGatt
+            // themselves from the BluetoothGatt they receive, which is the one returned here.
+            client.mBluetoothGatt = device.connectGatt(mContext, true, client.mGattCallback);
+            return client;
+        }
+    }
+}
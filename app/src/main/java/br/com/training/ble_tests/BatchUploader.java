@@ -0,0 +1,579 @@
+package br.com.training.ble_tests;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends the temperature readings to a server in gzipped NDJSON batches.
+ * <p>
+ * {@link #add(String, TemperatureMeasurement)} is called on the GATT thread and only puts the
+ * reading on a bounded in-memory queue. The upload thread moves the queued readings to an
+ * {@link UploadOutbox} on disk, so they survive a crash or a long time without network, and is
+ * the only one to touch the outbox. A batch is closed when it holds {@link #getBatchSize()}
+ * readings, {@link Config#setMaxBatchBytes(int)} bytes or when its first reading is
+ * {@link Config#setMaxBatchAge(long)} old. Closed batches are handed one at a time to the send
+ * thread, which posts them with {@code Content-Encoding: gzip} and an {@code X-Batch-Id} header
+ * the server can use to drop duplicates, since a batch whose response was lost is sent again.
+ * A send blocking for up to the connect and read timeouts thus never holds up the writes to disk.
+ * <p>
+ * The response body is always read to the end and the connection is never disconnected, so
+ * {@link HttpURLConnection} keeps one connection alive for all batches. A 2xx removes the batch;
+ * a 408, 429, 5xx or a network error keeps it and retries after an exponential backoff with
+ * jitter. Redirects are not followed: a 3xx means the upload address is wrong, so the batch is
+ * kept, retried the same way and counted in {@link #getRedirectedBatches()}. Any other status
+ * means the server will never take the batch, so it is dropped.
+ * <p>
+ * The batch size follows the round-trip time: it doubles while a batch takes less than half of
+ * {@link Config#setTargetRoundTrip(long)} and halves when it takes more, or when a send fails.
+ */
+public class BatchUploader implements Closeable {
+    private static final String CONTENT_TYPE = "application/x-ndjson";
+    private static final String HEADER_BATCH_ID = "X-Batch-Id";
+
+    /**
+     * Settings of a {@link BatchUploader}. Times are in milliseconds.
+     */
+    public static class Config {
+        private final URL mUrl;
+        private int mMinBatchSize = 16;
+        private int mMaxBatchSize = 4096;
+        private int mInitialBatchSize = 256;
+        private int mMaxBatchBytes = 256 * 1024;
+        private long mMaxBatchAge = 30_000;
+        private long mFlushInterval = 1000;
+        private long mTargetRoundTrip = 1000;
+        private long mInitialBackoff = 1000;
+        private long mMaxBackoff = 5 * 60_000;
+        private long mMaxOutboxBytes = 16 * 1024 * 1024;
+        private int mConnectTimeout = 15_000;
+        private int mReadTimeout = 30_000;
+        private int mQueueCapacity = 8192;
+
+        /**
+         * @param url Address the batches are posted to
+         * @throws IOException if the address is malformed
+         */
+        public Config(String url) throws IOException {
+            mUrl = new URL(url);
+        }
+
+        /**
+         * @param min     Smallest number of readings per batch
+         * @param max     Largest number of readings per batch
+         * @param initial Number of readings per batch before any round trip was measured
+         */
+        public Config setBatchSize(int min, int initial, int max) {
+            if (min < 1 || initial < min || max < initial) {
+                throw new IllegalArgumentException("Batch sizes must be 1 <= min <= initial <= max");
+            }
+            mMinBatchSize = min;
+            mInitialBatchSize = initial;
+            mMaxBatchSize = max;
+            return this;
+        }
+
+        /**
+         * @param maxBatchBytes Uncompressed size at which a batch is closed
+         */
+        public Config setMaxBatchBytes(int maxBatchBytes) {
+            mMaxBatchBytes = maxBatchBytes;
+            return this;
+        }
+
+        /**
+         * @param maxBatchAge Time after its first reading at which a batch is closed
+         */
+        public Config setMaxBatchAge(long maxBatchAge) {
+            mMaxBatchAge = maxBatchAge;
+            return this;
+        }
+
+        /**
+         * @param flushInterval How often the open batch is written to disk and its age checked;
+         *                      a crash loses at most this much, as sends run on their own thread
+         */
+        public Config setFlushInterval(long flushInterval) {
+            mFlushInterval = flushInterval;
+            return this;
+        }
+
+        /**
+         * @param targetRoundTrip Time a batch should take to be sent and acknowledged
+         */
+        public Config setTargetRoundTrip(long targetRoundTrip) {
+            mTargetRoundTrip = targetRoundTrip;
+            return this;
+        }
+
+        /**
+         * @param initial Wait before the first retry
+         * @param max     Longest wait between retries
+         */
+        public Config setBackoff(long initial, long max) {
+            mInitialBackoff = initial;
+            mMaxBackoff = max;
+            return this;
+        }
+
+        /**
+         * @param maxOutboxBytes Disk space the unsent batches may take; the oldest are dropped beyond it
+         */
+        public Config setMaxOutboxBytes(long maxOutboxBytes) {
+            mMaxOutboxBytes = maxOutboxBytes;
+            return this;
+        }
+
+        /**
+         * @param connect Connect timeout
+         * @param read    Read timeout
+         */
+        public Config setTimeouts(int connect, int read) {
+            mConnectTimeout = connect;
+            mReadTimeout = read;
+            return this;
+        }
+
+        /**
+         * @param queueCapacity Readings waiting to be written to the outbox, for instance while the
+         *                      disk is slow; readings beyond it are dropped
+         */
+        public Config setQueueCapacity(int queueCapacity) {
+            mQueueCapacity = queueCapacity;
+            return this;
+        }
+    }
+
+    private final Config mConfig;
+    private final UploadOutbox mOutbox;
+    private final ScheduledExecutorService mExecutor;
+    private final ExecutorService mSender;
+    private final BlockingQueue<Reading> mQueue;
+    private final AtomicBoolean mDrainPending = new AtomicBoolean();
+    private final AtomicBoolean mClosed = new AtomicBoolean();
+    private final Random mRandom = new Random();
+    private final Runnable mDrain = this::drain;
+    private final Runnable mRetry = () -> {
+        mWaiting = false;
+        drain();
+    };
+
+    private volatile int mBatchSize;
+    // Written by the upload thread only.
+    private long mBackoff;
+    private boolean mWaiting;
+    private boolean mSending;
+    private volatile long mSentBatches;
+    private volatile long mSentBytes;
+    private volatile long mRejectedBatches;
+    private volatile long mRedirectedBatches;
+    private volatile long mFailures;
+    private volatile long mLastRoundTrip;
+    private final AtomicLong mErrors = new AtomicLong();
+    private final AtomicLong mDroppedReadings = new AtomicLong();
+
+    /**
+     * Opens the outbox and starts the upload and send threads. Batches left by a previous run
+     * are sent first.
+     *
+     * @param directory Directory of the outbox
+     * @param config    Config
+     * @throws IOException if the outbox cannot be opened
+     */
+    public BatchUploader(File directory, Config config) throws IOException {
+        mConfig = config;
+        mOutbox = new UploadOutbox(directory, config.mMaxOutboxBytes);
+        mQueue = new ArrayBlockingQueue<>(config.mQueueCapacity);
+        mBatchSize = config.mInitialBatchSize;
+        mBackoff = config.mInitialBackoff;
+
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "BatchUploader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        mExecutor = executor;
+        mSender = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "BatchUploader-send");
+            thread.setDaemon(true);
+            return thread;
+        });
+        mExecutor.scheduleWithFixedDelay(this::tick, config.mFlushInterval, config.mFlushInterval, TimeUnit.MILLISECONDS);
+        requestDrain();
+    }
+
+    /**
+     * Queues a reading. Never blocks and never touches the disk; readings that do not fit in the
+     * queue are counted and dropped.
+     *
+     * @param address     Device address
+     * @param measurement Measurement, which must not be modified afterwards
+     */
+    public void add(final String address, final TemperatureMeasurement measurement) {
+        if (!mQueue.offer(new Reading(address, measurement, System.nanoTime()))) {
+            mDroppedReadings.incrementAndGet();
+            return;
+        }
+        requestDrain();
+    }
+
+    /**
+     * @return Readings per batch, adapted to the round-trip time.
+     */
+    public int getBatchSize() {
+        return mBatchSize;
+    }
+
+    /**
+     * @return Batches acknowledged by the server.
+     */
+    public long getSentBatches() {
+        return mSentBatches;
+    }
+
+    /**
+     * @return Compressed bytes acknowledged by the server.
+     */
+    public long getSentBytes() {
+        return mSentBytes;
+    }
+
+    /**
+     * @return Batches the server refused with a 4xx, which are dropped.
+     */
+    public long getRejectedBatches() {
+        return mRejectedBatches;
+    }
+
+    /**
+     * @return Sends answered with a 3xx, a sign that the upload address is misconfigured. The
+     *         batches are kept and retried.
+     */
+    public long getRedirectedBatches() {
+        return mRedirectedBatches;
+    }
+
+    /**
+     * @return Sends that failed and will be retried.
+     */
+    public long getFailures() {
+        return mFailures;
+    }
+
+    /**
+     * @return Batches dropped because the outbox was full.
+     */
+    public long getDroppedBatches() {
+        return mOutbox.getDroppedBatches();
+    }
+
+    /**
+     * @return Readings dropped because the queue was full.
+     */
+    public long getDroppedReadings() {
+        return mDroppedReadings.get();
+    }
+
+    /**
+     * @return Disk errors.
+     */
+    public long getErrors() {
+        return mErrors.get();
+    }
+
+    /**
+     * @return Round-trip time of the last acknowledged batch, in nanoseconds.
+     */
+    public long getLastRoundTrip() {
+        return mLastRoundTrip;
+    }
+
+    /**
+     * Stops the threads without blocking the caller. The queued readings are written and the
+     * open batch is closed so it is sent on the next start. The batch being sent, if any, is let
+     * finish or time out and its result applied; then the threads end.
+     */
+    @Override
+    public void close() {
+        if (!mClosed.compareAndSet(false, true)) return;
+
+        mExecutor.execute(this::closeOutbox);
+        // Runs after the send in flight, whose result is then already queued on the upload thread.
+        mSender.execute(mExecutor::shutdown);
+        mSender.shutdown();
+    }
+
+    /**
+     * Waits for the threads to end after {@link #close()}.
+     *
+     * @param timeout Milliseconds
+     * @return false if they are still running
+     */
+    boolean awaitClosed(final long timeout) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        return mSender.awaitTermination(timeout, TimeUnit.MILLISECONDS)
+                && mExecutor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "batch size=%d sent=%d (%d bytes) rejected=%d redirected=%d "
+                        + "failures=%d dropped=%d batches, %d readings errors=%d rtt=%.1fms",
+                mBatchSize, mSentBatches, mSentBytes, mRejectedBatches, mRedirectedBatches, mFailures,
+                getDroppedBatches(), getDroppedReadings(), getErrors(), mLastRoundTrip / 1e6);
+    }
+
+    private void requestDrain() {
+        if (!mDrainPending.getAndSet(true)) {
+            try {
+                mExecutor.execute(mDrain);
+            } catch (RuntimeException e) {
+                // Rejected after close(), the batch stays in the outbox.
+                mDrainPending.set(false);
+            }
+        }
+    }
+
+    /**
+     * Moves the queued readings to the open batch, closing it whenever it is full.
+     */
+    private void writeQueued() {
+        Reading reading;
+        while ((reading = mQueue.poll()) != null) {
+            try {
+                mOutbox.append(reading.mAddress, reading.mMeasurement, reading.mQueuedAt);
+                if (mOutbox.getOpenCount() >= mBatchSize || mOutbox.getOpenBytes() >= mConfig.mMaxBatchBytes) {
+                    mOutbox.roll();
+                }
+            } catch (IOException e) {
+                mErrors.incrementAndGet();
+            }
+        }
+    }
+
+    private void closeOutbox() {
+        writeQueued();
+        try {
+            mOutbox.roll();
+            mOutbox.close();
+        } catch (IOException e) {
+            mErrors.incrementAndGet();
+        }
+    }
+
+    /**
+     * Writes the open batch to disk and closes it once it is old enough.
+     */
+    private void tick() {
+        if (mClosed.get()) return;
+
+        writeQueued();
+        try {
+            mOutbox.flush();
+            final long age = System.nanoTime() - mOutbox.getOpenSince();
+            if (mOutbox.getOpenCount() > 0 && age >= TimeUnit.MILLISECONDS.toNanos(mConfig.mMaxBatchAge)) {
+                mOutbox.roll();
+            }
+        } catch (IOException e) {
+            mErrors.incrementAndGet();
+        }
+        drain();
+    }
+
+    /**
+     * Writes the queued readings, then hands the oldest closed batch to the send thread unless
+     * one is in flight, a retry is pending or {@link #close()} was called.
+     */
+    private void drain() {
+        mDrainPending.set(false);
+        if (mClosed.get()) return;
+
+        writeQueued();
+        if (mWaiting || mSending) return;
+
+        final File batch;
+        try {
+            batch = mOutbox.nextBatch();
+        } catch (IOException e) {
+            mErrors.incrementAndGet();
+            return;
+        }
+        if (batch == null) return;
+
+        mSending = true;
+        final String batchId = mOutbox.getBatchId(batch);
+        try {
+            mSender.execute(() -> post(batch, batchId));
+        } catch (RuntimeException e) {
+            // Rejected after close(), the batch is sent by the next run.
+            mSending = false;
+        }
+    }
+
+    /**
+     * Sends a batch on the send thread, then applies the result on the upload thread.
+     */
+    private void post(final File batch, final String batchId) {
+        final long startedAt = System.nanoTime();
+        int status;
+        long retryAfter = 0;
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) mConfig.mUrl.openConnection();
+            status = send(connection, batch, batchId);
+            final String header = connection.getHeaderField("Retry-After");
+            if (header != null) retryAfter = parseRetryAfter(header);
+        } catch (IOException e) {
+            status = -1;
+        }
+        final long roundTrip = System.nanoTime() - startedAt;
+
+        final int result = status;
+        final long delay = retryAfter;
+        mExecutor.execute(() -> onSent(batch, result, delay, roundTrip));
+    }
+
+    private void onSent(final File batch, final int status, final long retryAfter, final long roundTrip) {
+        mSending = false;
+        if (status >= 200 && status < 300) {
+            adapt(roundTrip);
+            mBackoff = mConfig.mInitialBackoff;
+            mSentBytes += batch.length();
+            mLastRoundTrip = roundTrip;
+            mOutbox.remove(batch);
+            // Last, so a reader that sees the batch counted also sees the size adapted to it.
+            mSentBatches++;
+        } else if (status >= 300 && status < 400) {
+            mRedirectedBatches++;
+            scheduleRetry(retryAfter);
+            return;
+        } else if (status == -1 || status == 408 || status == 429 || status >= 500) {
+            mFailures++;
+            mBatchSize = Math.max(mConfig.mMinBatchSize, mBatchSize / 2);
+            scheduleRetry(retryAfter);
+            return;
+        } else {
+            mRejectedBatches++;
+            mOutbox.remove(batch);
+        }
+        drain();
+    }
+
+    /**
+     * Posts a batch and reads the whole response, so the connection goes back to the pool.
+     *
+     * @return HTTP status
+     */
+    private int send(final HttpURLConnection connection, final File batch, final String batchId) throws IOException {
+        final long length = batch.length();
+        connection.setConnectTimeout(mConfig.mConnectTimeout);
+        connection.setReadTimeout(mConfig.mReadTimeout);
+        connection.setInstanceFollowRedirects(false);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(length);
+        connection.setRequestProperty("Content-Type", CONTENT_TYPE);
+        connection.setRequestProperty("Content-Encoding", "gzip");
+        connection.setRequestProperty(HEADER_BATCH_ID, batchId);
+
+        final byte[] buffer = new byte[16 * 1024];
+        final InputStream in = new FileInputStream(batch);
+        try {
+            final OutputStream out = connection.getOutputStream();
+            try {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+
+        final int status = connection.getResponseCode();
+        final InputStream response = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        if (response != null) {
+            try {
+                while (response.read(buffer) > 0) {
+                    // Drained so the connection is kept alive.
+                }
+            } finally {
+                response.close();
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Grows the batches while the server answers fast and shrinks them when it is slow.
+     */
+    private void adapt(final long roundTrip) {
+        final long target = TimeUnit.MILLISECONDS.toNanos(mConfig.mTargetRoundTrip);
+        if (roundTrip < target / 2) {
+            mBatchSize = Math.min(mConfig.mMaxBatchSize, mBatchSize * 2);
+        } else if (roundTrip > target) {
+            mBatchSize = Math.max(mConfig.mMinBatchSize, mBatchSize / 2);
+        }
+    }
+
+    /**
+     * Waits between half and all of the backoff, or what the server asked for, then doubles it.
+     */
+    private void scheduleRetry(final long retryAfter) {
+        if (mClosed.get()) return;
+
+        long delay = mBackoff / 2 + (long) (mRandom.nextDouble() * (mBackoff / 2));
+        delay = Math.max(delay, retryAfter);
+        mBackoff = Math.min(mConfig.mMaxBackoff, mBackoff * 2);
+        mWaiting = true;
+        try {
+            mExecutor.schedule(mRetry, delay, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            // Rejected after close(), the batch is sent by the next run.
+        }
+    }
+
+    /**
+     * A reading waiting to be written to the outbox.
+     */
+    private static final class Reading {
+        final String mAddress;
+        final TemperatureMeasurement mMeasurement;
+        final long mQueuedAt;
+
+        Reading(String address, TemperatureMeasurement measurement, long queuedAt) {
+            mAddress = address;
+            mMeasurement = measurement;
+            mQueuedAt = queuedAt;
+        }
+    }
+
+    /**
+     * @return Retry-After in milliseconds, 0 if it is not a number of seconds.
+     */
+    private static long parseRetryAfter(final String header) {
+        try {
+            return Math.max(0, Long.parseLong(header.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
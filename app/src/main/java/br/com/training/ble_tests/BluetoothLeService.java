@@ -17,22 +17,22 @@ package br.com.training.ble_tests;
 
 import android.app.Service;
 import android.bluetooth.BluetoothAdapter;
-import android.bluetooth.BluetoothDevice;
 import android.bluetooth.BluetoothGatt;
-import android.bluetooth.BluetoothGattCallback;
 import android.bluetooth.BluetoothGattCharacteristic;
 import android.bluetooth.BluetoothGattDescriptor;
 import android.bluetooth.BluetoothGattService;
 import android.bluetooth.BluetoothManager;
-import android.bluetooth.BluetoothProfile;
 import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.os.Binder;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.util.Log;
 
-import org.json.JSONException;
-
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.UUID;
 
@@ -42,12 +42,29 @@ import java.util.UUID;
  */
 public class BluetoothLeService extends Service {
     private final static String LOG = "BluetoothLeService";
+    private final static String TRACE_FILE = "trace.bin";
+    private final static String CRASH_TRACE_FILE = "trace-crash.bin";
+    private final static String UPLOAD_OUTBOX_DIRECTORY = "outbox";
+    private final static String CAPTURE_DIR = "captures";
+    private final static int TRACE_CAPACITY = 16 * 1024;
+    private final static String PREFERENCES = "ble_tests";
+    private final static String PREFERENCE_LAST_DEVICE_ADDRESS = "last_device_address";
+    private final static String DEFAULT_DEVICE_ADDRESS = "1C:87:74:01:73:10";
 
     private BluetoothManager mBluetoothManager;
     private BluetoothAdapter mBluetoothAdapter;
+    private GattClient.Factory mGattClientFactory;
     private String mBluetoothDeviceAddress;
-    private BluetoothGatt mBluetoothGatt;
+    private GattClient mGattClient;
     private int mConnectionState = STATE_DISCONNECTED;
+    private EarlyConnection mEarlyConnection;
+    private boolean mEarlyConnecting;
+    private boolean mDestroyed;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /** Opened by {@link #connectEarly(Context)} for the next service created to adopt. */
+    private static EarlyConnection sEarlyConnection;
+    private static boolean sCreated;
 
     private static final int STATE_DISCONNECTED = 0;
     private static final int STATE_CONNECTING = 1;
@@ -58,6 +75,13 @@ public class BluetoothLeService extends Service {
     public final static String ACTION_GATT_SERVICES_DISCOVERED = "br.com.training.ble_tests.ACTION_GATT_SERVICES_DISCOVERED";
     public final static String ACTION_DATA_AVAILABLE = "br.com.training.ble_tests.ACTION_DATA_AVAILABLE";
     public final static String EXTRA_DATA = "br.com.training.ble_tests.EXTRA_DATA";
+    public final static String EXTRA_STREAM_ID = "br.com.training.ble_tests.EXTRA_STREAM_ID";
+    public final static String EXTRA_DISPATCHED_AT = "br.com.training.ble_tests.EXTRA_DISPATCHED_AT";
+    public final static String EXTRA_STARTED_AT = "br.com.training.ble_tests.EXTRA_STARTED_AT";
+    /** {@link StartupMetrics#START_COLD}, {@link StartupMetrics#START_WARM} or {@link StartupMetrics#START_HOT}. */
+    public final static String EXTRA_START = "br.com.training.ble_tests.EXTRA_START";
+    /** Set on the data of a replayed capture, whose stream ids are not those of {@link LocalBinder#getMetrics()}. */
+    public final static String EXTRA_REPLAY = "br.com.training.ble_tests.EXTRA_REPLAY";
 
     private void broadcastUpdate(final String action) {
         final Intent intent = new Intent(action);
@@ -66,29 +90,37 @@ public class BluetoothLeService extends Service {
 
     // Implements callback methods for GATT events that the app cares about.  For example,
     // connection change and services discovered.
-    private final BluetoothGattCallback mGattCallback = new BluetoothGattCallback() {
+    private final GattClient.Callback mGattCallback = new GattClient.Callback() {
         @Override
-        public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
+        public void onConnectionStateChange(GattClient client, int status, int newState) {
             String intentAction;
-            if (newState == BluetoothProfile.STATE_CONNECTED) {
+            if (newState == GattClient.STATE_CONNECTED) {
                 intentAction = ACTION_GATT_CONNECTED;
                 mConnectionState = STATE_CONNECTED;
+                mTracer.trace(EventTracer.LEVEL_INFO, EventTracer.EVENT_CONNECTED, deviceSlot(client), status, 0);
+                mStartup.onConnected(System.nanoTime());
+                saveLastDeviceAddress(client.getAddress());
                 broadcastUpdate(intentAction);
                 Log.i(LOG, "Connected to GATT server.");
                 // Attempts to discover services after successful connection.
                 Log.i(LOG, "Attempting to start service discovery:" +
-                        mBluetoothGatt.discoverServices());
-            } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
+                        client.discoverServices());
+            } else if (newState == GattClient.STATE_DISCONNECTED) {
                 intentAction = ACTION_GATT_DISCONNECTED;
                 mConnectionState = STATE_DISCONNECTED;
+                mTracer.trace(EventTracer.LEVEL_INFO, EventTracer.EVENT_DISCONNECTED, deviceSlot(client), status, 0);
                 Log.i(LOG, "Disconnected from GATT server.");
                 broadcastUpdate(intentAction);
             }
         }
 
         @Override
-        public void onServicesDiscovered(BluetoothGatt gatt, int status) {
-            if (status == BluetoothGatt.GATT_SUCCESS) {
+        public void onServicesDiscovered(GattClient client, int status) {
+            if (status == GattClient.GATT_SUCCESS) {
+                mTracer.trace(EventTracer.LEVEL_INFO, EventTracer.EVENT_SERVICES_DISCOVERED, deviceSlot(client), status, 0);
+                // Subscribes here rather than waiting for the activity, which may not be listening yet.
+                client.setCharacteristicNotification(UUID.fromString(GattAttributes.SERVICE_HEALTH_THERMOMETER),
+                        GattDataPath.TEMPERATURE_MEASUREMENT, BluetoothGattDescriptor.ENABLE_INDICATION_VALUE, true);
                 broadcastUpdate(ACTION_GATT_SERVICES_DISCOVERED);
             } else {
                 Log.w(LOG, "onServicesDiscovered received: " + status);
@@ -96,41 +128,96 @@ public class BluetoothLeService extends Service {
         }
 
         @Override
-        public void onCharacteristicRead(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
-            if (status == BluetoothGatt.GATT_SUCCESS) {
-                broadcastUpdate(ACTION_DATA_AVAILABLE, characteristic);
-
-                Log.i(LOG, "onCharacteristicRead()");
+        public void onCharacteristicRead(GattClient client, UUID characteristic, byte[] value, int status) {
+            final long callbackAt = System.nanoTime();
+            if (status == GattClient.GATT_SUCCESS) {
+                mTracer.trace(EventTracer.LEVEL_DEBUG, EventTracer.EVENT_CHARACTERISTIC_READ, deviceSlot(client),
+                        value == null ? 0 : value.length, 0);
+                mDataPath.onCharacteristicValue(client.getAddress(), characteristic, value, callbackAt);
             }
         }
 
         @Override
-        public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
-            Log.i(LOG, "onCharacteristicChanged()");
-            broadcastUpdate(ACTION_DATA_AVAILABLE, characteristic);
+        public void onCharacteristicChanged(GattClient client, UUID characteristic, byte[] value) {
+            final long callbackAt = System.nanoTime();
+            mDataPath.onCharacteristicValue(client.getAddress(), characteristic, value, callbackAt);
         }
     };
 
-    private void broadcastUpdate(final String action, final BluetoothGattCharacteristic characteristic) {
-        final Intent intent = new Intent(action);
-        Log.i(LOG, "broadcastUpdate()");
-        if (characteristic.getUuid().equals(UUID.fromString(GattAttributes.CHARACTERISTIC_TEMPERATURE_MEASUREMENT))) {
-            try {
-                intent.putExtra(EXTRA_DATA, GattHTParser.parse(characteristic).toString());
-            } catch (JSONException e) {
-                e.printStackTrace();
-            }
-        } else {
-            Log.w(LOG, "broadcastUpdate() - OTHER");
-            final byte[] data = characteristic.getValue();
-            if (data != null && data.length > 0) {
-                final StringBuilder stringBuilder = new StringBuilder(data.length);
-                for (byte byteChar : data)
-                    stringBuilder.append(String.format("%02X ", byteChar));
-                intent.putExtra(EXTRA_DATA, new String(data) + "\n" + stringBuilder.toString());
+    private final ServiceMetrics mMetrics = new ServiceMetrics();
+    private final EventTracer mTracer = new EventTracer(TRACE_CAPACITY);
+    private final DeviceHistory mHistory = new DeviceHistory();
+    private final StartupMetrics mStartup = new StartupMetrics(mTracer);
+    private volatile BatchUploader mUploader;
+
+    /**
+     * Sends the decoded values received from the devices to the activity.
+     */
+    private final BroadcastListener mBroadcastListener = new BroadcastListener() {
+        @Override
+        void send(ServiceMetrics.Stream stream, String data) {
+            broadcastUpdate(ACTION_DATA_AVAILABLE, stream, data, false);
+        }
+
+        @Override
+        public void onMalformed(ServiceMetrics.Stream stream, byte[] value) {
+            Log.w(LOG, "Discarding malformed value of " + stream.getCharacteristic() + " from " + stream.getAddress());
+        }
+    };
+
+    /**
+     * Sends the decoded values of a replayed capture to the activity, marked with {@link #EXTRA_REPLAY}.
+     */
+    private final BroadcastListener mReplayListener = new BroadcastListener() {
+        @Override
+        void send(ServiceMetrics.Stream stream, String data) {
+            broadcastUpdate(ACTION_DATA_AVAILABLE, stream, data, true);
+        }
+
+        @Override
+        public void onMalformed(ServiceMetrics.Stream stream, byte[] value) {
+            Log.w(LOG, "Discarding malformed replayed value of " + stream.getCharacteristic() + " from " + stream.getAddress());
+        }
+    };
+
+    /**
+     * Data path of the values received from the devices: they are also kept in the history,
+     * uploaded and, when capturing, recorded.
+     */
+    private final GattDataPath mDataPath = new GattDataPath(new GattDataPath.Listener() {
+        @Override
+        public void onTemperature(ServiceMetrics.Stream stream, TemperatureMeasurement measurement) {
+            mHistory.record(stream.getAddress(), measurement);
+            final BatchUploader uploader = mUploader;
+            if (uploader != null) uploader.add(stream.getAddress(), measurement);
+            if (mStartup.onReading(System.nanoTime())) {
+                Log.i(LOG, "Startup times:\n" + mStartup);
             }
+            mBroadcastListener.onTemperature(stream, measurement);
         }
 
+        @Override
+        public void onOtherData(ServiceMetrics.Stream stream, byte[] data) {
+            mBroadcastListener.onOtherData(stream, data);
+        }
+
+        @Override
+        public void onMalformed(ServiceMetrics.Stream stream, byte[] value) {
+            mBroadcastListener.onMalformed(stream, value);
+        }
+    }, mMetrics, mTracer);
+
+    private int deviceSlot(GattClient client) {
+        return mMetrics.deviceSlot(client.getAddress());
+    }
+
+    private void broadcastUpdate(final String action, final ServiceMetrics.Stream stream, final String data,
+                                 final boolean replay) {
+        final Intent intent = new Intent(action);
+        if (data != null) intent.putExtra(EXTRA_DATA, data);
+        if (replay) intent.putExtra(EXTRA_REPLAY, true);
+        intent.putExtra(EXTRA_STREAM_ID, stream.getId());
+        intent.putExtra(EXTRA_DISPATCHED_AT, System.nanoTime());
         sendBroadcast(intent);
     }
 
@@ -138,6 +225,164 @@ public class BluetoothLeService extends Service {
         BluetoothLeService getService() {
             return BluetoothLeService.this;
         }
+
+        /**
+         * Counters and latency histograms of the notification path.
+         *
+         * @return ServiceMetrics
+         */
+        ServiceMetrics getMetrics() {
+            return mMetrics;
+        }
+
+        /**
+         * Ring of binary events of the notification path.
+         *
+         * @return EventTracer
+         */
+        EventTracer getTracer() {
+            return mTracer;
+        }
+
+        /**
+         * Last readings of every device, for the charts.
+         *
+         * @return DeviceHistory
+         */
+        DeviceHistory getHistory() {
+            return mHistory;
+        }
+
+        /**
+         * Time to connect and to the first reading of the cold, warm and hot starts.
+         *
+         * @return StartupMetrics
+         */
+        StartupMetrics getStartupMetrics() {
+            return mStartup;
+        }
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        synchronized (BluetoothLeService.class) {
+            sCreated = true;
+            mEarlyConnection = sEarlyConnection;
+            sEarlyConnection = null;
+        }
+        mEarlyConnecting = mEarlyConnection != null;
+        mTracer.installCrashHandler(new File(getFilesDir(), CRASH_TRACE_FILE));
+        if (!BuildConfig.UPLOAD_URL.isEmpty()) {
+            try {
+                mUploader = new BatchUploader(new File(getFilesDir(), UPLOAD_OUTBOX_DIRECTORY),
+                        new BatchUploader.Config(BuildConfig.UPLOAD_URL));
+            } catch (IOException e) {
+                Log.e(LOG, "Unable to start the upload of readings.", e);
+            }
+        }
+    }
+
+    /**
+     * Started by {@link MainActivity} when it is created or restarted, with the kind of start in
+     * {@link #EXTRA_START}. Adopts the connection opened by {@link #connectEarly(Context)}, if
+     * any, else connects to the last known device without waiting for the activity to bind.
+     * Being started, the service outlives the activity across configuration changes, so a
+     * recreated activity finds the GATT link still up. The activity stops the service when it
+     * finishes.
+     */
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        final long startedAt = intent == null ? 0 : intent.getLongExtra(EXTRA_STARTED_AT, 0);
+        if (startedAt != 0) {
+            mStartup.begin(intent.getIntExtra(EXTRA_START, StartupMetrics.START_COLD), startedAt);
+            if (mConnectionState == STATE_CONNECTED) mStartup.onConnected(System.nanoTime());
+        }
+
+        if (mEarlyConnection != null) {
+            // Delivers the events queued so far, so after begin() for onConnected() to count.
+            attachEarlyConnection();
+        } else if (initialize()) {
+            connect(getLastDeviceAddress(this));
+        }
+        return START_NOT_STICKY;
+    }
+
+    /**
+     * Opens the connection to the last known device on a background thread, so that it goes on
+     * while the caller inflates its views; the service, created only once the caller returns to
+     * the main loop, adopts it. Does nothing while a service exists, since it holds the link, or
+     * while a connection is already waiting to be adopted.
+     *
+     * @param context Context
+     */
+    static void connectEarly(Context context) {
+        final EarlyConnection connection;
+        synchronized (BluetoothLeService.class) {
+            if (sCreated || sEarlyConnection != null) return;
+            connection = sEarlyConnection = new EarlyConnection();
+        }
+
+        final Context application = context.getApplicationContext();
+        new Thread(() -> {
+            GattClient client = null;
+            try {
+                final BluetoothManager manager =
+                        (BluetoothManager) application.getSystemService(Context.BLUETOOTH_SERVICE);
+                final BluetoothAdapter adapter = manager == null ? null : manager.getAdapter();
+                if (adapter != null && adapter.isEnabled()) {
+                    client = new AndroidGattClient.Factory(application, adapter)
+                            .open(getLastDeviceAddress(application), connection);
+                }
+            } catch (RuntimeException e) {
+                Log.w(LOG, "Unable to connect early.", e);
+            }
+            connection.opened(client);
+        }, "EarlyConnection").start();
+    }
+
+    private void attachEarlyConnection() {
+        mEarlyConnection.attach(mGattCallback, client -> mHandler.post(() -> adopt(client)));
+        mEarlyConnection = null;
+    }
+
+    private void adopt(GattClient client) {
+        mEarlyConnecting = false;
+        // Destroyed meanwhile, or connected to another device picked in the activity
+        if (mDestroyed || mGattClient != null) {
+            if (client != null) client.close();
+            return;
+        }
+
+        if (client == null) {
+            if (initialize()) connect(getLastDeviceAddress(this));
+            return;
+        }
+        mGattClient = client;
+        mBluetoothDeviceAddress = client.getAddress();
+        // The events queued before the service attached may already have reported the link up.
+        if (mConnectionState == STATE_DISCONNECTED) mConnectionState = STATE_CONNECTING;
+        initialize();
+    }
+
+    @Override
+    public void onDestroy() {
+        mDestroyed = true;
+        synchronized (BluetoothLeService.class) {
+            sCreated = false;
+        }
+        // Never started: adopt() closes the connection once it is opened.
+        if (mEarlyConnection != null) attachEarlyConnection();
+        stopCapture();
+        close();
+        mTracer.uninstallCrashHandler();
+        if (mUploader != null) {
+            Log.i(LOG, "Upload: " + mUploader);
+            // Returns at once; the upload thread finishes the batch in flight and closes the outbox.
+            mUploader.close();
+            mUploader = null;
+        }
+        super.onDestroy();
     }
 
     @Override
@@ -147,15 +392,108 @@ public class BluetoothLeService extends Service {
 
     @Override
     public boolean onUnbind(Intent intent) {
-        // After using a given device, you should make sure that BluetoothGatt.close() is called
-        // such that resources are cleaned up properly.  In this particular example, close() is
-        // invoked when the UI is disconnected from the Service.
-        close();
+        // The GATT link is kept while the service is started, so that the next activity reuses
+        // it. BluetoothGatt.close() is called from onDestroy() instead.
         return super.onUnbind(intent);
     }
 
+    /**
+     * Address of the device this app last connected to.
+     *
+     * @param context Context
+     * @return Device address
+     */
+    public static String getLastDeviceAddress(Context context) {
+        return context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE)
+                .getString(PREFERENCE_LAST_DEVICE_ADDRESS, DEFAULT_DEVICE_ADDRESS);
+    }
+
+    private void saveLastDeviceAddress(final String address) {
+        final SharedPreferences preferences = getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        if (!address.equals(preferences.getString(PREFERENCE_LAST_DEVICE_ADDRESS, null))) {
+            preferences.edit().putString(PREFERENCE_LAST_DEVICE_ADDRESS, address).apply();
+        }
+    }
+
     private final IBinder mBinder = new LocalBinder();
 
+    /**
+     * Writes the event trace of the notification path to the app files directory.
+     *
+     * @return The trace file, to be read with {@code TraceDecoder}, or null if it could not
+     *         be written.
+     */
+    public File dumpTrace() {
+        final File file = new File(getFilesDir(), TRACE_FILE);
+        try {
+            mTracer.dump(file);
+            return file;
+        } catch (IOException e) {
+            Log.e(LOG, "Unable to dump the event trace.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Starts appending the raw value of every characteristic received to a new capture file in
+     * the app files directory, see {@link ReplayEngine}.
+     *
+     * @return The capture file or null if it could not be created.
+     */
+    public File startCapture() {
+        stopCapture();
+
+        final File dir = new File(getFilesDir(), CAPTURE_DIR);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.e(LOG, "Unable to create " + dir);
+            return null;
+        }
+
+        final File file = new File(dir, "capture-" + System.currentTimeMillis() + ".bin");
+        try {
+            mDataPath.setCapture(new CaptureWriter(file));
+            return file;
+        } catch (IOException e) {
+            Log.e(LOG, "Unable to start capture.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Stops the capture started by {@link #startCapture()}, if any.
+     */
+    public void stopCapture() {
+        final CaptureWriter capture = mDataPath.getCapture();
+        if (capture == null) return;
+
+        mDataPath.setCapture(null);
+        try {
+            capture.close();
+        } catch (IOException e) {
+            Log.e(LOG, "Unable to close capture.", e);
+        }
+    }
+
+    /**
+     * Replays a capture to the activity, as if the values had been received from the devices.
+     * The replay has its own data path, with its own metrics and a tracer that records nothing:
+     * replayed readings are not added to the history, not uploaded, not captured again, not
+     * counted in {@link LocalBinder#getMetrics()} and not traced. Blocks until the capture ends,
+     * so call it from a worker thread.
+     *
+     * @param file  Capture written by {@link #startCapture()}
+     * @param speed {@link ReplayEngine#REAL_TIME}, a multiple of it or {@link ReplayEngine#AS_FAST_AS_POSSIBLE}
+     * @return Summary of the replay
+     * @throws IOException
+     */
+    public ReplayEngine.Result replayCapture(File file, double speed) throws IOException {
+        final GattDataPath dataPath = new GattDataPath(mReplayListener);
+        dataPath.getTracer().setLevel(EventTracer.LEVEL_OFF);
+        final ReplayEngine.Result result = new ReplayEngine(dataPath).replay(file, speed);
+        Log.i(LOG, "Replayed " + file + ":\n" + dataPath.getMetrics().snapshot());
+        return result;
+    }
+
     /**
      * Initializes a reference to the local Bluetooth adapter.
      *
@@ -178,9 +516,23 @@ public class BluetoothLeService extends Service {
             return false;
         }
 
+        if (mGattClientFactory == null) {
+            mGattClientFactory = new AndroidGattClient.Factory(this, mBluetoothAdapter);
+        }
+
         return true;
     }
 
+    /**
+     * Replaces the platform GATT stack, e.g. by a simulated one in instrumented tests.
+     * Must be called before {@link #initialize()}.
+     *
+     * @param factory Opens the GATT client connections.
+     */
+    void setGattClientFactory(GattClient.Factory factory) {
+        mGattClientFactory = factory;
+    }
+
     /**
      * Connects to the GATT server hosted on the Bluetooth LE device.
      *
@@ -188,20 +540,30 @@ public class BluetoothLeService extends Service {
      *
      * @return Return true if the connection is initiated successfully. The connection result
      *         is reported asynchronously through the
-     *         {@code BluetoothGattCallback#onConnectionStateChange(android.bluetooth.BluetoothGatt, int, int)}
+     *         {@code GattClient.Callback#onConnectionStateChange(GattClient, int, int)}
      *         callback.
      */
     public boolean connect(final String address) {
-        if (mBluetoothAdapter == null || address == null) {
+        if (mGattClientFactory == null || address == null) {
             Log.w(LOG, "BluetoothAdapter not initialized or unspecified address.");
             return false;
         }
 
-        // Previously connected device.  Try to reconnect.
+        // The connection opened by connectEarly() is on its way; adopt() takes it over.
+        if (mEarlyConnecting && address.equals(getLastDeviceAddress(this))) {
+            Log.d(LOG, "Already connecting to the last device.");
+            return true;
+        }
+
+        // Previously connected device.  Reuse the link or try to reconnect.
         if (mBluetoothDeviceAddress != null && address.equals(mBluetoothDeviceAddress)
-                && mBluetoothGatt != null) {
-            Log.d(LOG, "Trying to use an existing mBluetoothGatt for connection.");
-            if (mBluetoothGatt.connect()) {
+                && mGattClient != null) {
+            if (mConnectionState != STATE_DISCONNECTED) {
+                Log.d(LOG, "Already connected or connecting to " + address);
+                return true;
+            }
+            Log.d(LOG, "Trying to use an existing mGattClient for connection.");
+            if (mGattClient.connect()) {
                 mConnectionState = STATE_CONNECTING;
                 return true;
             } else {
@@ -209,14 +571,12 @@ public class BluetoothLeService extends Service {
             }
         }
 
-        final BluetoothDevice device = mBluetoothAdapter.getRemoteDevice(address);
-        if (device == null) {
+        final GattClient client = mGattClientFactory.open(address, mGattCallback);
+        if (client == null) {
             Log.w(LOG, "Device not found.  Unable to connect.");
             return false;
         }
-        // We want to directly connect to the device, so we are setting the autoConnect
-        // parameter to false.
-        mBluetoothGatt = device.connectGatt(this, true, mGattCallback);
+        mGattClient = client;
         Log.d(LOG, "Trying to create a new connection.");
         mBluetoothDeviceAddress = address;
         mConnectionState = STATE_CONNECTING;
@@ -226,15 +586,15 @@ public class BluetoothLeService extends Service {
     /**
      * Disconnects an existing connection or cancel a pending connection. The disconnection result
      * is reported asynchronously through the
-     * {@code BluetoothGattCallback#onConnectionStateChange(android.bluetooth.BluetoothGatt, int, int)}
+     * {@code GattClient.Callback#onConnectionStateChange(GattClient, int, int)}
      * callback.
      */
     public void disconnect() {
-        if (mBluetoothAdapter == null || mBluetoothGatt == null) {
+        if (mGattClient == null) {
             Log.w(LOG, "BluetoothAdapter not initialized");
             return;
         }
-        mBluetoothGatt.disconnect();
+        mGattClient.disconnect();
     }
 
     /**
@@ -242,32 +602,34 @@ public class BluetoothLeService extends Service {
      * released properly.
      */
     public void close() {
-        if (mBluetoothGatt == null) {
+        if (mGattClient == null) {
             return;
         }
-        mBluetoothGatt.close();
-        mBluetoothGatt = null;
+        mGattClient.close();
+        mGattClient = null;
     }
 
     /**
      * Request a read on a given {@code BluetoothGattCharacteristic}. The read result is reported
-     * asynchronously through the {@code BluetoothGattCallback#onCharacteristicRead(android.bluetooth.BluetoothGatt, android.bluetooth.BluetoothGattCharacteristic, int)}
+     * asynchronously through the {@code GattClient.Callback#onCharacteristicRead(GattClient, UUID, byte[], int)}
      * callback.
      *
      * @param characteristic The characteristic to read from.
      */
     public void readCharacteristic(BluetoothGattCharacteristic characteristic) {
-        if (mBluetoothAdapter == null || mBluetoothGatt == null) {
+        final BluetoothGatt gatt = getBluetoothGatt();
+        if (gatt == null) {
             Log.w(LOG, "BluetoothAdapter not initialized");
             return;
         }
-        mBluetoothGatt.readCharacteristic(characteristic);
+        gatt.readCharacteristic(characteristic);
     }
 
     public boolean writeDescriptor(BluetoothGattDescriptor descriptor) {
-        if (descriptor == null) return false;
+        final BluetoothGatt gatt = getBluetoothGatt();
+        if (descriptor == null || gatt == null) return false;
 
-        return mBluetoothGatt.writeDescriptor(descriptor);
+        return gatt.writeDescriptor(descriptor);
     }
 
     /**
@@ -278,18 +640,28 @@ public class BluetoothLeService extends Service {
      * @param enabled If true, enable notification.  False otherwise.
      */
     public void setCharacteristicNotification(BluetoothGattCharacteristic characteristic, byte[] descriptorValue, boolean enabled) {
-        if (mBluetoothAdapter == null || mBluetoothGatt == null) {
+        if (!(mGattClient instanceof AndroidGattClient)) {
             Log.w(LOG, "BluetoothAdapter not initialized");
             return;
         }
-        mBluetoothGatt.setCharacteristicNotification(characteristic, enabled);
-
-        if (characteristic.getDescriptor(UUID.fromString(GattAttributes.CLIENT_CHARACTERISTIC_CONFIG)) != null) {
-            BluetoothGattDescriptor descriptor = characteristic.getDescriptor(UUID.fromString(GattAttributes.CLIENT_CHARACTERISTIC_CONFIG));
-            descriptor.setValue(descriptorValue);
+        ((AndroidGattClient) mGattClient).setCharacteristicNotification(characteristic, descriptorValue, enabled);
+    }
 
-            writeDescriptor(descriptor);
+    /**
+     * Enables or disables notification on a give characteristic of the connected device.
+     *
+     * @param service Service that owns the characteristic.
+     * @param characteristic Characteristic to act on.
+     * @param descriptorValue BluetoothGattDescriptor.ENABLE_INDICATION_VALUE || BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE
+     * @param enabled If true, enable notification.  False otherwise.
+     * @return true if the request was sent.
+     */
+    public boolean setCharacteristicNotification(UUID service, UUID characteristic, byte[] descriptorValue, boolean enabled) {
+        if (mGattClient == null) {
+            Log.w(LOG, "BluetoothAdapter not initialized");
+            return false;
         }
+        return mGattClient.setCharacteristicNotification(service, characteristic, descriptorValue, enabled);
     }
 
     /**
@@ -299,12 +671,20 @@ public class BluetoothLeService extends Service {
      * @return A {@code List} of supported services.
      */
     public List<BluetoothGattService> getSupportedGattServices() {
-        if (mBluetoothGatt == null) return null;
+        final BluetoothGatt gatt = getBluetoothGatt();
+        if (gatt == null) return null;
 
-        return mBluetoothGatt.getServices();
+        return gatt.getServices();
     }
 
+    /**
+     * @return The platform {@code BluetoothGatt} or null when not connected through the
+     *         Android stack.
+     */
     public BluetoothGatt getBluetoothGatt() {
-        return mBluetoothGatt;
+        if (mGattClient instanceof AndroidGattClient) {
+            return ((AndroidGattClient) mGattClient).getBluetoothGatt();
+        }
+        return null;
     }
 }
@@ -0,0 +1,37 @@
+package br.com.training.ble_tests;
+
+import org.json.JSONException;
+
+/**
+ * {@link GattDataPath.Listener} of {@link BluetoothLeService} that turns the decoded values into
+ * the text shown by {@link MainActivity}. Sending it is left to {@link #send(ServiceMetrics.Stream, String)},
+ * a broadcast in the service and a plain call in the load harness.
+ */
+abstract class BroadcastListener implements GattDataPath.Listener {
+
+    /**
+     * Sends the data of a value to the activity.
+     *
+     * @param stream Device and characteristic the value came from
+     * @param data   Text to show, may be null
+     */
+    abstract void send(ServiceMetrics.Stream stream, String data);
+
+    @Override
+    public void onTemperature(ServiceMetrics.Stream stream, TemperatureMeasurement measurement) {
+        try {
+            send(stream, GattHTParser.toJson(measurement).toString());
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void onOtherData(ServiceMetrics.Stream stream, byte[] data) {
+        if (data != null && data.length > 0) {
+            send(stream, new String(data) + "\n" + HexUtils.toHexString(data));
+        } else {
+            send(stream, null);
+        }
+    }
+}
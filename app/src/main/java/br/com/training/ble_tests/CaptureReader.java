@@ -0,0 +1,176 @@
+package br.com.training.ble_tests;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Reads back a file written by {@link CaptureWriter}, one value at a time.
+ * <pre>
+ * CaptureReader reader = new CaptureReader(file);
+ * while (reader.next()) {
+ *     dataPath.onCharacteristicValue(reader.getAddress(), reader.getCharacteristic(), reader.getValue());
+ * }
+ * </pre>
+ */
+public class CaptureReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileInputStream mStream;
+    private final FileChannel mChannel;
+    private ByteBuffer mBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final long mStartedAt;
+    private final List<String> mAddresses = new ArrayList<>();
+    private final List<UUID> mCharacteristics = new ArrayList<>();
+    private boolean mEof;
+
+    private String mAddress;
+    private UUID mCharacteristic;
+    private byte[] mValue;
+    private long mTimestamp;
+
+    public CaptureReader(File file) throws IOException {
+        mStream = new FileInputStream(file);
+        mChannel = mStream.getChannel();
+        mBuffer.limit(0);
+
+        if (!ensure(8 + 4 + 8) || mBuffer.getLong() != CaptureWriter.MAGIC) {
+            close();
+            throw new IOException("Not a capture file: " + file);
+        }
+        final int version = mBuffer.getInt();
+        if (version != CaptureWriter.VERSION) {
+            close();
+            throw new IOException("Unsupported capture version " + version);
+        }
+        mStartedAt = mBuffer.getLong();
+    }
+
+    /**
+     * Moves to the next value.
+     *
+     * @return false at the end of the capture.
+     * @throws IOException if the file is truncated or corrupt
+     */
+    public boolean next() throws IOException {
+        while (ensure(1)) {
+            final byte type = mBuffer.get();
+            if (type == CaptureWriter.RECORD_STREAM) {
+                readStream();
+            } else if (type == CaptureWriter.RECORD_VALUE) {
+                readValue();
+                return true;
+            } else {
+                throw new IOException("Corrupt capture, unknown record " + type);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Wall clock time, in milliseconds since epoch, at which the capture started.
+     */
+    public long getStartedAt() {
+        return mStartedAt;
+    }
+
+    public String getAddress() {
+        return mAddress;
+    }
+
+    public UUID getCharacteristic() {
+        return mCharacteristic;
+    }
+
+    /**
+     * @return Raw value of the current record, a new array for every record.
+     */
+    public byte[] getValue() {
+        return mValue;
+    }
+
+    /**
+     * @return Nanoseconds between the first value of the capture and the current one.
+     */
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mStream.close();
+    }
+
+    private void readStream() throws IOException {
+        final int index = (int) readVarint();
+        require(2);
+        final int length = mBuffer.getShort() & 0xFFFF;
+        require(length + 16);
+        final byte[] utf = new byte[length];
+        mBuffer.get(utf);
+        final UUID characteristic = new UUID(mBuffer.getLong(), mBuffer.getLong());
+
+        if (index != mAddresses.size()) throw new IOException("Corrupt capture, stream " + index + " out of order");
+        mAddresses.add(new String(utf, "UTF-8"));
+        mCharacteristics.add(characteristic);
+    }
+
+    private void readValue() throws IOException {
+        final int stream = (int) readVarint();
+        final long delta = readVarint();
+        final int length = (int) readVarint();
+        if (stream >= mAddresses.size()) throw new IOException("Corrupt capture, unknown stream " + stream);
+
+        require(length);
+        mValue = new byte[length];
+        mBuffer.get(mValue);
+        mAddress = mAddresses.get(stream);
+        mCharacteristic = mCharacteristics.get(stream);
+        mTimestamp += delta;
+    }
+
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            require(1);
+            final byte b = mBuffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Corrupt capture, varint too long");
+    }
+
+    private void require(final int bytes) throws IOException {
+        if (!ensure(bytes)) throw new EOFException("Truncated capture");
+    }
+
+    /**
+     * Makes sure at least {@code bytes} are buffered, reading more from the file if needed.
+     *
+     * @return false if the file ends first.
+     */
+    private boolean ensure(final int bytes) throws IOException {
+        if (mBuffer.remaining() >= bytes) return true;
+
+        if (bytes > mBuffer.capacity()) {
+            final ByteBuffer larger = ByteBuffer.allocateDirect(bytes);
+            larger.put(mBuffer);
+            larger.flip();
+            mBuffer = larger;
+        }
+
+        mBuffer.compact();
+        while (mBuffer.position() < bytes && !mEof) {
+            if (mChannel.read(mBuffer) < 0) mEof = true;
+        }
+        mBuffer.flip();
+        return mBuffer.remaining() >= bytes;
+    }
+}
@@ -0,0 +1,161 @@
+package br.com.training.ble_tests;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Appends raw characteristic values to a capture file that {@link CaptureReader} and
+ * {@link ReplayEngine} can play back.
+ * <p>
+ * File layout, all numbers big endian:
+ * <pre>
+ * header   magic (long) version (int) startedAt millis (long)
+ * stream   0x01 stream (varint) address (UTF) characteristic (2 longs)
+ * value    0x02 stream (varint) nanos since previous value (varint) length (varint) bytes
+ * </pre>
+ * A stream record is written the first time a (device, characteristic) pair is seen, so value
+ * records only carry a small index. Records go through a direct buffer and reach the file in
+ * large writes. Safe to call from several GATT threads.
+ */
+public class CaptureWriter implements Closeable {
+    static final long MAGIC = 0x424C454341505455L; // "BLECAPTU"
+    static final int VERSION = 1;
+    static final byte RECORD_STREAM = 0x01;
+    static final byte RECORD_VALUE = 0x02;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** Largest record header: type, three varints. */
+    private static final int MAX_VALUE_HEADER = 1 + 5 + 10 + 5;
+
+    private final FileOutputStream mStream;
+    private final FileChannel mChannel;
+    private final ByteBuffer mBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final Map<String, Map<UUID, Integer>> mStreams = new HashMap<>();
+    private int mStreamCount;
+    private long mLastTimestamp = -1;
+    private long mCount;
+
+    /**
+     * Creates or truncates a capture file.
+     *
+     * @param file Destination
+     * @throws IOException
+     */
+    public CaptureWriter(File file) throws IOException {
+        mStream = new FileOutputStream(file);
+        mChannel = mStream.getChannel();
+        mBuffer.putLong(MAGIC);
+        mBuffer.putInt(VERSION);
+        mBuffer.putLong(System.currentTimeMillis());
+    }
+
+    /**
+     * Appends a value.
+     *
+     * @param address        Device address
+     * @param characteristic Characteristic UUID
+     * @param value          Raw value, may be null
+     * @param timestamp      {@link System#nanoTime()} when the value was received
+     * @throws IOException
+     */
+    public synchronized void append(final String address, final UUID characteristic, final byte[] value,
+                                    final long timestamp) throws IOException {
+        final int stream = streamIndex(address, characteristic);
+        final int length = value == null ? 0 : value.length;
+        final long delta = mLastTimestamp < 0 ? 0 : Math.max(0, timestamp - mLastTimestamp);
+        mLastTimestamp = timestamp;
+
+        ensureRemaining(MAX_VALUE_HEADER + length);
+        mBuffer.put(RECORD_VALUE);
+        putVarint(mBuffer, stream);
+        putVarint(mBuffer, delta);
+        putVarint(mBuffer, length);
+        if (length > mBuffer.remaining()) {
+            flushBuffer();
+            writeFully(ByteBuffer.wrap(value));
+        } else if (length > 0) {
+            mBuffer.put(value);
+        }
+        mCount++;
+    }
+
+    /**
+     * @return Number of values appended.
+     */
+    public synchronized long getCount() {
+        return mCount;
+    }
+
+    /**
+     * Writes the buffered records to the file.
+     *
+     * @throws IOException
+     */
+    public synchronized void flush() throws IOException {
+        flushBuffer();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            mStream.close();
+        }
+    }
+
+    private int streamIndex(final String address, final UUID characteristic) throws IOException {
+        Map<UUID, Integer> byCharacteristic = mStreams.get(address);
+        if (byCharacteristic == null) {
+            byCharacteristic = new HashMap<>();
+            mStreams.put(address, byCharacteristic);
+        }
+
+        final Integer known = byCharacteristic.get(characteristic);
+        if (known != null) return known;
+
+        final int index = mStreamCount++;
+        byCharacteristic.put(characteristic, index);
+
+        final byte[] utf = address.getBytes("UTF-8");
+        ensureRemaining(1 + 5 + 2 + utf.length + 16);
+        mBuffer.put(RECORD_STREAM);
+        putVarint(mBuffer, index);
+        mBuffer.putShort((short) utf.length);
+        mBuffer.put(utf);
+        mBuffer.putLong(characteristic.getMostSignificantBits());
+        mBuffer.putLong(characteristic.getLeastSignificantBits());
+        return index;
+    }
+
+    private void ensureRemaining(final int bytes) throws IOException {
+        if (mBuffer.remaining() < Math.min(bytes, BUFFER_SIZE)) flushBuffer();
+    }
+
+    private void flushBuffer() throws IOException {
+        mBuffer.flip();
+        writeFully(mBuffer);
+        mBuffer.clear();
+    }
+
+    private void writeFully(final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            mChannel.write(buffer);
+        }
+    }
+
+    static void putVarint(final ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+}
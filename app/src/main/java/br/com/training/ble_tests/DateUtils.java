@@ -3,14 +3,16 @@ package br.com.training.ble_tests;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import java.text.DateFormat;
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Provides useful methods for handling date/time.
@@ -20,6 +22,13 @@ import java.util.TimeZone;
 public final class DateUtils {
     public static final String DATE_FORMAT_DATE_TIME = "yyyy-MM-dd'T'HH:mm:ss";
 
+    private static final String DATE_FORMAT_DEFAULT = "yyyy-MM-dd HH:mm:ss";
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final Formatter UTC_DATE_TIME = formatter(DATE_FORMAT_DATE_TIME, UTC);
+    private static final ConcurrentHashMap<String, Formatter> FORMATTERS = new ConcurrentHashMap<>();
+
+    private DateUtils() {
+    }
 
     /**
      * Returns the current datetime in format of formatDate string passed as parameter.
@@ -29,12 +38,15 @@ public final class DateUtils {
      * @return Datetime formatted
      */
     public static String getCurrentDatetime(String formatDate) {
-        if (formatDate == null) formatDate = "yyyy-MM-dd HH:mm:ss";
-
-        Calendar calendar = GregorianCalendar.getInstance();
+        if (formatDate == null) formatDate = DATE_FORMAT_DEFAULT;
 
-        DateFormat dateFormat = new SimpleDateFormat(formatDate, Locale.getDefault());
-        return dateFormat.format(calendar.getTime());
+        Formatter formatter = FORMATTERS.get(formatDate);
+        if (formatter == null) {
+            formatter = formatter(formatDate, null);
+            final Formatter previous = FORMATTERS.putIfAbsent(formatDate, formatter);
+            if (previous != null) formatter = previous;
+        }
+        return formatter.format(System.currentTimeMillis());
     }
 
     /**
@@ -43,8 +55,414 @@ public final class DateUtils {
      * @return String
      */
     public static String getCurrentDateTimeUTC() {
-        SimpleDateFormat format = new SimpleDateFormat(DateUtils.DATE_FORMAT_DATE_TIME, Locale.getDefault());
-        format.setTimeZone(TimeZone.getTimeZone("UTC"));
-        return format.format(new Date());
+        return UTC_DATE_TIME.format(System.currentTimeMillis());
+    }
+
+    /**
+     * Creates a formatter for a {@link SimpleDateFormat} pattern.
+     *
+     * @param pattern Date pattern
+     * @param zone    Time zone, or null to follow the default time zone of the device
+     * @return Formatter, safe to share between threads
+     * @throws IllegalArgumentException if the pattern is invalid
+     */
+    @NonNull
+    public static Formatter formatter(@NonNull String pattern, @Nullable TimeZone zone) {
+        return new Formatter(pattern, zone);
+    }
+
+    /**
+     * Formats milliseconds since epoch into a caller-provided {@link StringBuilder} or
+     * {@code char[]}.
+     * <p>
+     * The date part of the pattern (y, M, d, X and literals) is rendered once per day and kept in
+     * an immutable state object published through a volatile field, so most calls only write the
+     * H, m, s and S digits. Days with a time zone offset change are cached per second instead.
+     * Concurrent callers never lock; at worst two threads build the state of a new day at once.
+     * Formatters that follow the default zone read {@link TimeZone#getDefault()}, a copy, on every
+     * call so a zone change is picked up at once; formatters with a fixed zone do not allocate.
+     * <p>
+     * Digits are always ASCII. Patterns with other letters (text months, AM/PM, z, Z...) are
+     * delegated to a per-thread {@link SimpleDateFormat}.
+     */
+    public static final class Formatter {
+        private static final int MILLIS_PER_SECOND = 1000;
+        private static final int MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+        private static final int MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+
+        private static final ThreadLocal<char[]> SCRATCH = new ThreadLocal<>();
+
+        private final String mPattern;
+        private final TimeZone mZone;
+
+        /** Pattern letter of each operation, or 0 for a literal. */
+        private final char[] mLetters;
+        private final int[] mCounts;
+        private final String[] mLiterals;
+        /** Operations [mSegmentStarts[i], mSegmentEnds[i]) make up segment i. */
+        private final int[] mSegmentStarts;
+        private final int[] mSegmentEnds;
+        /** Whether a segment only depends on the day and the offset. */
+        private final boolean[] mConstant;
+        private final int mMaxLength;
+
+        private final ThreadLocal<SimpleDateFormat> mFallback;
+        private volatile State mState;
+
+        private Formatter(String pattern, TimeZone zone) {
+            mPattern = pattern;
+            mZone = zone == null ? null : (TimeZone) zone.clone();
+            // Rejects invalid patterns exactly like the platform does.
+            new SimpleDateFormat(pattern, Locale.US);
+
+            final List<Character> letters = new ArrayList<>();
+            final List<Integer> counts = new ArrayList<>();
+            final List<String> literals = new ArrayList<>();
+            final boolean supported = compile(pattern, letters, counts, literals);
+
+            if (!supported) {
+                mLetters = null;
+                mCounts = null;
+                mLiterals = null;
+                mSegmentStarts = mSegmentEnds = null;
+                mConstant = null;
+                mMaxLength = 0;
+                mFallback = new ThreadLocal<>();
+                return;
+            }
+            mFallback = null;
+
+            final int operations = letters.size();
+            mLetters = new char[operations];
+            mCounts = new int[operations];
+            mLiterals = literals.toArray(new String[operations]);
+            final int[] starts = new int[operations];
+            final int[] ends = new int[operations];
+            final boolean[] constant = new boolean[operations];
+            int segments = 0;
+            int maxLength = 0;
+            for (int i = 0; i < operations; i++) {
+                mLetters[i] = letters.get(i);
+                mCounts[i] = counts.get(i);
+                maxLength += maxLength(mLetters[i], mCounts[i], mLiterals[i]);
+
+                final boolean isConstant = isConstant(mLetters[i]);
+                if (isConstant && segments > 0 && constant[segments - 1]) {
+                    ends[segments - 1] = i + 1;
+                } else {
+                    starts[segments] = i;
+                    ends[segments] = i + 1;
+                    constant[segments] = isConstant;
+                    segments++;
+                }
+            }
+            mSegmentStarts = Arrays.copyOf(starts, segments);
+            mSegmentEnds = Arrays.copyOf(ends, segments);
+            mConstant = Arrays.copyOf(constant, segments);
+            mMaxLength = maxLength;
+        }
+
+        /**
+         * @return Largest number of chars a call to {@link #format(long, char[], int)} writes.
+         * Patterns handled by {@link SimpleDateFormat} have no bound and return -1.
+         */
+        public int getMaxLength() {
+            return mFallback != null ? -1 : mMaxLength;
+        }
+
+        /**
+         * @param millis Milliseconds since epoch
+         * @return Formatted date
+         */
+        @NonNull
+        public String format(final long millis) {
+            if (mFallback != null) return fallback().format(new Date(millis));
+
+            final char[] buffer = new char[mMaxLength];
+            return new String(buffer, 0, format(millis, buffer, 0));
+        }
+
+        /**
+         * Appends the formatted date.
+         *
+         * @param millis Milliseconds since epoch
+         * @param out    Destination
+         * @return {@code out}
+         */
+        @NonNull
+        public StringBuilder format(final long millis, @NonNull final StringBuilder out) {
+            if (mFallback != null) return out.append(fallback().format(new Date(millis)));
+
+            char[] scratch = SCRATCH.get();
+            if (scratch == null || scratch.length < mMaxLength) {
+                scratch = new char[Math.max(64, mMaxLength)];
+                SCRATCH.set(scratch);
+            }
+            return out.append(scratch, 0, format(millis, scratch, 0));
+        }
+
+        /**
+         * Writes the formatted date into {@code out}.
+         *
+         * @param millis Milliseconds since epoch
+         * @param out    Destination, with room for {@link #getMaxLength()} chars after offset
+         * @param offset Index of the first char to write
+         * @return Index following the last char written
+         */
+        public int format(final long millis, @NonNull final char[] out, int offset) {
+            if (mFallback != null) {
+                final String formatted = fallback().format(new Date(millis));
+                formatted.getChars(0, formatted.length(), out, offset);
+                return offset + formatted.length();
+            }
+
+            final TimeZone zone = mZone != null ? mZone : TimeZone.getDefault();
+            State state = mState;
+            if (state == null || millis < state.start || millis >= state.end
+                    || (mZone == null && !state.zoneId.equals(zone.getID()))) {
+                state = newState(millis, zone);
+                mState = state;
+            }
+
+            final int millisOfDay = state.millisOfDayAtStart + (int) (millis - state.start);
+            for (int i = 0; i < mConstant.length; i++) {
+                final char[] rendered = state.segments[i];
+                if (rendered != null) {
+                    System.arraycopy(rendered, 0, out, offset, rendered.length);
+                    offset += rendered.length;
+                    continue;
+                }
+                final int operation = mSegmentStarts[i];
+                final int value;
+                switch (mLetters[operation]) {
+                    case 'H':
+                        value = millisOfDay / MILLIS_PER_HOUR;
+                        break;
+                    case 'm':
+                        value = millisOfDay / MILLIS_PER_MINUTE % 60;
+                        break;
+                    case 's':
+                        value = millisOfDay / MILLIS_PER_SECOND % 60;
+                        break;
+                    default: // 'S'
+                        value = millisOfDay % MILLIS_PER_SECOND;
+                        break;
+                }
+                offset = putNumber(out, offset, value, mCounts[operation]);
+            }
+            return offset;
+        }
+
+        @Override
+        public String toString() {
+            return "Formatter{" + mPattern + ", " + (mZone == null ? "default" : mZone.getID()) + '}';
+        }
+
+        /**
+         * Renders the constant segments for the day holding {@code millis}, or for its second when
+         * the offset of the zone changes during that day.
+         */
+        private State newState(final long millis, final TimeZone zone) {
+            final Calendar calendar = new GregorianCalendar(zone, Locale.US);
+            calendar.setTimeInMillis(millis);
+            long start = startOfDay(calendar);
+            // Midnight may not exist when DST starts, so set the next day's midnight again.
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            long end = startOfDay(calendar);
+
+            final int offset = zone.getOffset(millis);
+            if (millis < start || millis >= end
+                    || zone.getOffset(start) != offset || zone.getOffset(end - 1) != offset) {
+                final long second = millis % MILLIS_PER_SECOND;
+                start = millis - (second < 0 ? second + MILLIS_PER_SECOND : second);
+                end = start + MILLIS_PER_SECOND;
+            }
+            calendar.setTimeInMillis(start);
+
+            final char[][] segments = new char[mConstant.length][];
+            final char[] buffer = new char[mMaxLength];
+            for (int i = 0; i < segments.length; i++) {
+                if (!mConstant[i]) continue;
+                int length = 0;
+                for (int operation = mSegmentStarts[i]; operation < mSegmentEnds[i]; operation++) {
+                    length = render(calendar, offset, operation, buffer, length);
+                }
+                segments[i] = new char[length];
+                System.arraycopy(buffer, 0, segments[i], 0, length);
+            }
+
+            final int millisOfDayAtStart = calendar.get(Calendar.HOUR_OF_DAY) * MILLIS_PER_HOUR
+                    + calendar.get(Calendar.MINUTE) * MILLIS_PER_MINUTE
+                    + calendar.get(Calendar.SECOND) * MILLIS_PER_SECOND
+                    + calendar.get(Calendar.MILLISECOND);
+            return new State(zone.getID(), start, end, millisOfDayAtStart, segments);
+        }
+
+        private static long startOfDay(final Calendar calendar) {
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            return calendar.getTimeInMillis();
+        }
+
+        private int render(final Calendar calendar, final int zoneOffset, final int operation,
+                           final char[] out, final int offset) {
+            final int count = mCounts[operation];
+            switch (mLetters[operation]) {
+                case 0:
+                    final String literal = mLiterals[operation];
+                    literal.getChars(0, literal.length(), out, offset);
+                    return offset + literal.length();
+                case 'y':
+                    final int year = calendar.get(Calendar.YEAR);
+                    return count == 2 ? putNumber(out, offset, year % 100, 2) : putNumber(out, offset, year, count);
+                case 'M':
+                    return putNumber(out, offset, calendar.get(Calendar.MONTH) + 1, count);
+                case 'd':
+                    return putNumber(out, offset, calendar.get(Calendar.DAY_OF_MONTH), count);
+                default: // 'X'
+                    return putZoneOffset(out, offset, zoneOffset, count);
+            }
+        }
+
+        private SimpleDateFormat fallback() {
+            SimpleDateFormat format = mFallback.get();
+            if (format == null) {
+                format = new SimpleDateFormat(mPattern, Locale.getDefault());
+                mFallback.set(format);
+            }
+            format.setTimeZone(mZone != null ? mZone : TimeZone.getDefault());
+            return format;
+        }
+
+        /**
+         * Splits a pattern into literals and letters.
+         *
+         * @return false if the pattern holds a letter this class does not format itself
+         */
+        private static boolean compile(final String pattern, final List<Character> letters,
+                                       final List<Integer> counts, final List<String> literals) {
+            final StringBuilder literal = new StringBuilder();
+            int i = 0;
+            while (i < pattern.length()) {
+                final char c = pattern.charAt(i);
+                if (c == '\'') {
+                    if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '\'') {
+                        literal.append('\'');
+                        i += 2;
+                        continue;
+                    }
+                    // Quoted text up to the closing quote, where '' stands for a quote.
+                    i++;
+                    while (i < pattern.length()) {
+                        if (pattern.charAt(i) == '\'') {
+                            if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '\'') {
+                                literal.append('\'');
+                                i += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        literal.append(pattern.charAt(i++));
+                    }
+                    i++;
+                } else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                    int count = 1;
+                    while (i + count < pattern.length() && pattern.charAt(i + count) == c) count++;
+                    if ("yMdHmsSX".indexOf(c) < 0 || (c == 'M' && count > 2) || (c == 'X' && count > 3)) {
+                        return false;
+                    }
+                    if (literal.length() > 0) {
+                        letters.add((char) 0);
+                        counts.add(0);
+                        literals.add(literal.toString());
+                        literal.setLength(0);
+                    }
+                    letters.add(c);
+                    counts.add(count);
+                    literals.add(null);
+                    i += count;
+                } else {
+                    literal.append(c);
+                    i++;
+                }
+            }
+            if (literal.length() > 0) {
+                letters.add((char) 0);
+                counts.add(0);
+                literals.add(literal.toString());
+            }
+            return true;
+        }
+
+        private static boolean isConstant(final char letter) {
+            return letter != 'H' && letter != 'm' && letter != 's' && letter != 'S';
+        }
+
+        private static int maxLength(final char letter, final int count, final String literal) {
+            switch (letter) {
+                case 0:
+                    return literal.length();
+                case 'y':
+                    return Math.max(count, 11);
+                case 'S':
+                    return Math.max(count, 3);
+                case 'X':
+                    return 6;
+                default:
+                    return Math.max(count, 2);
+            }
+        }
+
+        /**
+         * Writes a non-negative number zero padded to {@code digits}, longer numbers in full.
+         */
+        private static int putNumber(final char[] out, final int offset, int value, final int digits) {
+            int length = 1;
+            for (int v = value; v >= 10; v /= 10) length++;
+            if (length < digits) length = digits;
+            for (int i = offset + length - 1; i >= offset; i--) {
+                out[i] = (char) ('0' + value % 10);
+                value /= 10;
+            }
+            return offset + length;
+        }
+
+        /**
+         * Writes an ISO-8601 offset as {@code SimpleDateFormat} does: Z, +HH, +HHMM or +HH:MM.
+         */
+        private static int putZoneOffset(final char[] out, int offset, final int zoneOffset, final int count) {
+            if (zoneOffset == 0) {
+                out[offset] = 'Z';
+                return offset + 1;
+            }
+            final int minutes = Math.abs(zoneOffset) / MILLIS_PER_MINUTE;
+            out[offset++] = zoneOffset < 0 ? '-' : '+';
+            offset = putNumber(out, offset, minutes / 60, 2);
+            if (count == 1) return offset;
+            if (count == 3) out[offset++] = ':';
+            return putNumber(out, offset, minutes % 60, 2);
+        }
+    }
+
+    /**
+     * Immutable cache of a {@link Formatter}: the constant segments rendered for [start, end).
+     */
+    private static final class State {
+        final String zoneId;
+        final long start;
+        final long end;
+        final int millisOfDayAtStart;
+        /** Rendered text of the constant segments, null for the time fields. */
+        final char[][] segments;
+
+        State(String zoneId, long start, long end, int millisOfDayAtStart, char[][] segments) {
+            this.zoneId = zoneId;
+            this.start = start;
+            this.end = end;
+            this.millisOfDayAtStart = millisOfDayAtStart;
+            this.segments = segments;
+        }
     }
 }
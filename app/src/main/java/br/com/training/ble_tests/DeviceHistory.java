@@ -0,0 +1,61 @@
+package br.com.training.ble_tests;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recent temperature readings of every device, one {@link TimeSeriesRing} per device address.
+ * <p>
+ * Values are stored in degrees Celsius so a device switching units does not break its chart.
+ * Times are {@link TemperatureMeasurement#getReceivedAt()}, milliseconds since epoch.
+ */
+public class DeviceHistory {
+    /**
+     * Samples kept per device: 24 h of one reading every 5 s, about 200 KB.
+     */
+    public static final int DEFAULT_CAPACITY = 24 * 60 * 60 / 5;
+
+    private final int mCapacity;
+    private final ConcurrentHashMap<String, TimeSeriesRing> mRings = new ConcurrentHashMap<>();
+
+    public DeviceHistory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity Samples kept per device
+     */
+    public DeviceHistory(int capacity) {
+        mCapacity = capacity;
+    }
+
+    /**
+     * Appends a decoded measurement to the ring of its device. Special values (NaN, NRes,
+     * infinity) are skipped, a single one would squash the chart of real readings.
+     *
+     * @param address     Device address
+     * @param measurement Measurement
+     */
+    public void record(final String address, final TemperatureMeasurement measurement) {
+        if (measurement.isSpecial()) return;
+
+        final float temperature = measurement.getTemperature();
+        get(address).append(measurement.getReceivedAt(),
+                measurement.isFahrenheit() ? (temperature - 32f) * 5f / 9f : temperature);
+    }
+
+    /**
+     * Returns the ring of a device, creating an empty one the first time.
+     *
+     * @param address Device address
+     * @return TimeSeriesRing
+     */
+    public TimeSeriesRing get(final String address) {
+        TimeSeriesRing ring = mRings.get(address);
+        if (ring == null) {
+            ring = new TimeSeriesRing(mCapacity);
+            final TimeSeriesRing previous = mRings.putIfAbsent(address, ring);
+            if (previous != null) ring = previous;
+        }
+        return ring;
+    }
+}
@@ -0,0 +1,135 @@
+package br.com.training.ble_tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * GATT connection opened while the app starts, before {@link BluetoothLeService} exists.
+ * <p>
+ * The service is created on the main thread only once {@code MainActivity.onCreate} has
+ * returned, that is after the views are inflated. So the activity opens the connection on a
+ * background thread first, see {@link BluetoothLeService#connectEarly(android.content.Context)},
+ * and the service adopts it. The events the client reports before the service attaches are
+ * queued and delivered in order by {@link #attach(GattClient.Callback, Owner)}; later ones are
+ * forwarded directly.
+ */
+final class EarlyConnection implements GattClient.Callback {
+    /**
+     * Receives the client once it is opened.
+     */
+    interface Owner {
+        /**
+         * Called once, on the thread that opened the client or, if it was already opened, on
+         * the one attaching.
+         *
+         * @param client The client, or null if it could not be opened
+         */
+        void onOpened(GattClient client);
+    }
+
+    private interface Event {
+        void deliver(GattClient.Callback callback);
+    }
+
+    private final List<Event> mPending = new ArrayList<>();
+    private volatile GattClient.Callback mCallback;
+    private Owner mOwner;
+    private boolean mOpened;
+    private GattClient mClient;
+
+    /**
+     * Reports the outcome of opening the client.
+     *
+     * @param client The client, or null if it could not be opened
+     */
+    void opened(final GattClient client) {
+        final Owner owner;
+        synchronized (this) {
+            mOpened = true;
+            mClient = client;
+            owner = mOwner;
+        }
+        if (owner != null) owner.onOpened(client);
+    }
+
+    /**
+     * Hands the connection over: {@code owner} receives the client, then {@code callback} the
+     * queued events and every event that follows.
+     *
+     * @param callback Receives the GATT events
+     * @param owner    Receives the client
+     */
+    void attach(final GattClient.Callback callback, final Owner owner) {
+        final boolean opened;
+        final GattClient client;
+        synchronized (this) {
+            mOwner = owner;
+            opened = mOpened;
+            client = mClient;
+        }
+        if (opened) owner.onOpened(client);
+
+        synchronized (this) {
+            for (Event event : mPending) {
+                event.deliver(callback);
+            }
+            mPending.clear();
+            mCallback = callback;
+        }
+    }
+
+    private void queue(final Event event) {
+        final GattClient.Callback callback;
+        synchronized (this) {
+            callback = mCallback;
+            if (callback == null) {
+                mPending.add(event);
+                return;
+            }
+        }
+        // Attached while this event was on its way, after the queue was flushed
+        event.deliver(callback);
+    }
+
+    @Override
+    public void onConnectionStateChange(final GattClient client, final int status, final int newState) {
+        final GattClient.Callback callback = mCallback;
+        if (callback != null) {
+            callback.onConnectionStateChange(client, status, newState);
+        } else {
+            queue(target -> target.onConnectionStateChange(client, status, newState));
+        }
+    }
+
+    @Override
+    public void onServicesDiscovered(final GattClient client, final int status) {
+        final GattClient.Callback callback = mCallback;
+        if (callback != null) {
+            callback.onServicesDiscovered(client, status);
+        } else {
+            queue(target -> target.onServicesDiscovered(client, status));
+        }
+    }
+
+    @Override
+    public void onCharacteristicRead(final GattClient client, final UUID characteristic, final byte[] value,
+                                     final int status) {
+        final GattClient.Callback callback = mCallback;
+        if (callback != null) {
+            callback.onCharacteristicRead(client, characteristic, value, status);
+        } else {
+            queue(target -> target.onCharacteristicRead(client, characteristic, value, status));
+        }
+    }
+
+    @Override
+    public void onCharacteristicChanged(final GattClient client, final UUID characteristic, final byte[] value) {
+        final GattClient.Callback callback = mCallback;
+        if (callback != null) {
+            callback.onCharacteristicChanged(client, characteristic, value);
+        } else {
+            queue(target -> target.onCharacteristicChanged(client, characteristic, value));
+        }
+    }
+}
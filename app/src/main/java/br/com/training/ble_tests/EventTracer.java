@@ -0,0 +1,245 @@
+package br.com.training.ble_tests;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory tracer for the notification path, used instead of {@code Log} where a log line per
+ * notification would cost more than the work being logged.
+ * <p>
+ * Every event is four longs written into a preallocated ring: the {@link System#nanoTime()}
+ * time stamp, a header packing the event id, the device slot and the low 32 bits of the event
+ * sequence number, and two free arguments. Writers claim a slot with a single atomic increment
+ * and never block or allocate; when the ring is full the oldest events are overwritten.
+ * <p>
+ * The slots are read while other threads keep tracing, e.g. by the crash handler, so they are
+ * written like a seqlock: the header is first replaced by {@link #HEADER_BUSY}, then the other
+ * words and the header are written with ordered stores. {@link #dump(OutputStream)} reads the
+ * header before and after the other words and only keeps the event if both match it.
+ * <p>
+ * The ring can be dumped to a file on demand or when the process crashes, and read back on a
+ * computer with {@code TraceDecoder}, see {@code ./gradlew :benchmark:decodeTrace}.
+ */
+public class EventTracer {
+    public static final int LEVEL_DEBUG = 0;
+    public static final int LEVEL_INFO = 1;
+    public static final int LEVEL_WARN = 2;
+    public static final int LEVEL_OFF = 3;
+
+    public static final int EVENT_CONNECTED = 1;
+    public static final int EVENT_DISCONNECTED = 2;
+    public static final int EVENT_SERVICES_DISCOVERED = 3;
+    /** a: value length */
+    public static final int EVENT_CHARACTERISTIC_CHANGED = 4;
+    /** a: value length */
+    public static final int EVENT_CHARACTERISTIC_READ = 5;
+    /** a: mantissa, b: exponent of the temperature */
+    public static final int EVENT_DISPATCH_TEMPERATURE = 6;
+    /** a: value length */
+    public static final int EVENT_DISPATCH_OTHER = 7;
+    /** a: value length */
+    public static final int EVENT_MALFORMED = 8;
+    /** a: stream id, b: dispatch to UI latency in nanoseconds */
+    public static final int EVENT_DISPLAYED = 9;
+    /** a: values captured before the failure */
+    public static final int EVENT_CAPTURE_FAILED = 10;
+    /** a: kind of start, see {@link StartupMetrics}, b: time since the activity was created in nanoseconds */
+    public static final int EVENT_STARTUP_CONNECTED = 11;
+    /** a: kind of start, see {@link StartupMetrics}, b: time since the activity was created in nanoseconds */
+    public static final int EVENT_STARTUP_FIRST_READING = 12;
+
+    static final String[] EVENT_NAMES = {
+            "?",
+            "connected",
+            "disconnected",
+            "services_discovered",
+            "characteristic_changed",
+            "characteristic_read",
+            "dispatch_temperature",
+            "dispatch_other",
+            "malformed",
+            "displayed",
+            "capture_failed",
+            "startup_connected",
+            "startup_first_reading",
+    };
+
+    static final long MAGIC = 0x424C455452414345L; // "BLETRACE"
+    static final int VERSION = 1;
+    static final int WORDS_PER_EVENT = 4;
+    /** Header of a slot being written, which matches no sequence number the dump expects. */
+    static final long HEADER_BUSY = -1L;
+
+    private final AtomicLongArray mRing;
+    private final int mMask;
+    private final AtomicLong mSequence = new AtomicLong();
+    private volatile int mLevel = LEVEL_INFO;
+
+    /**
+     * @param capacity Number of events kept, rounded up to a power of two.
+     */
+    public EventTracer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mRing = new AtomicLongArray(size * WORDS_PER_EVENT);
+        mMask = size - 1;
+    }
+
+    /**
+     * Events below this level are discarded by a single comparison.
+     *
+     * @param level One of the LEVEL_* constants.
+     */
+    public void setLevel(int level) {
+        mLevel = level;
+    }
+
+    public int getLevel() {
+        return mLevel;
+    }
+
+    public int getCapacity() {
+        return mMask + 1;
+    }
+
+    /**
+     * Records an event.
+     *
+     * @param level      LEVEL_DEBUG, LEVEL_INFO or LEVEL_WARN
+     * @param event      One of the EVENT_* constants
+     * @param deviceSlot Device slot, see {@link ServiceMetrics.Stream#getDeviceSlot()}
+     * @param a          First argument
+     * @param b          Second argument
+     */
+    public void trace(final int level, final int event, final int deviceSlot, final long a, final long b) {
+        if (level < mLevel) return;
+
+        final long sequence = mSequence.getAndIncrement();
+        final int base = (int) (sequence & mMask) * WORDS_PER_EVENT;
+        // Each ordered store is published after the ones before it, so a reader that sees any
+        // new word also sees the busy header; the final header is published last.
+        mRing.lazySet(base + 1, HEADER_BUSY);
+        mRing.lazySet(base, System.nanoTime());
+        mRing.lazySet(base + 2, a);
+        mRing.lazySet(base + 3, b);
+        mRing.lazySet(base + 1, (long) (event & 0xFFFF) << 48
+                | (long) (deviceSlot & 0xFFFF) << 32
+                | (sequence & 0xFFFFFFFFL));
+    }
+
+    /**
+     * Writes the ring, oldest event first. An event that was being written or overwritten while
+     * it was read is written with the header {@link #HEADER_BUSY}; the decoder drops it, like any
+     * event whose sequence number does not match its position.
+     *
+     * @param out Destination, not closed
+     * @throws IOException
+     */
+    public void dump(final OutputStream out) throws IOException {
+        final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        final long end = mSequence.get();
+        final long start = Math.max(0, end - getCapacity());
+
+        data.writeLong(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(getCapacity());
+        data.writeLong(System.currentTimeMillis());
+        data.writeLong(System.nanoTime());
+        data.writeLong(start);
+        data.writeLong(end - start);
+        for (long sequence = start; sequence < end; sequence++) {
+            final int base = (int) (sequence & mMask) * WORDS_PER_EVENT;
+            final long header = mRing.get(base + 1);
+            final long timestamp = mRing.get(base);
+            final long a = mRing.get(base + 2);
+            final long b = mRing.get(base + 3);
+            final boolean consistent = header != HEADER_BUSY && mRing.get(base + 1) == header;
+            data.writeLong(timestamp);
+            data.writeLong(consistent ? header : HEADER_BUSY);
+            data.writeLong(a);
+            data.writeLong(b);
+        }
+        data.flush();
+    }
+
+    /**
+     * Writes the ring to a file, replacing it.
+     *
+     * @param file Destination
+     * @throws IOException
+     */
+    public void dump(final File file) throws IOException {
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            dump(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Dumps the ring to {@code file} before the default handler deals with an uncaught
+     * exception. The handler is installed once per process and dumps the tracer that installed
+     * it last, so a new service instance replaces the one it follows instead of chaining to it.
+     *
+     * @param file Destination of the dump
+     */
+    public void installCrashHandler(final File file) {
+        synchronized (CrashHandler.class) {
+            if (sCrashHandler == null) {
+                sCrashHandler = new CrashHandler(Thread.getDefaultUncaughtExceptionHandler());
+                Thread.setDefaultUncaughtExceptionHandler(sCrashHandler);
+            }
+            sCrashHandler.mTracer = this;
+            sCrashHandler.mFile = file;
+        }
+    }
+
+    /**
+     * Stops dumping this tracer on a crash, if it is the one the handler dumps.
+     */
+    public void uninstallCrashHandler() {
+        synchronized (CrashHandler.class) {
+            if (sCrashHandler != null && sCrashHandler.mTracer == this) {
+                sCrashHandler.mTracer = null;
+                sCrashHandler.mFile = null;
+            }
+        }
+    }
+
+    private static CrashHandler sCrashHandler;
+
+    private static final class CrashHandler implements Thread.UncaughtExceptionHandler {
+        private final Thread.UncaughtExceptionHandler mPrevious;
+        // Guarded by CrashHandler.class.
+        private EventTracer mTracer;
+        private File mFile;
+
+        CrashHandler(Thread.UncaughtExceptionHandler previous) {
+            mPrevious = previous;
+        }
+
+        @Override
+        public void uncaughtException(Thread thread, Throwable throwable) {
+            final EventTracer tracer;
+            final File file;
+            synchronized (CrashHandler.class) {
+                tracer = mTracer;
+                file = mFile;
+            }
+            if (tracer != null) {
+                try {
+                    tracer.dump(file);
+                } catch (IOException | RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+            if (mPrevious != null) mPrevious.uncaughtException(thread, throwable);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package br.com.training.ble_tests;
+
+import java.util.UUID;
+
+/**
+ * Minimal view of a GATT client connection, so {@link BluetoothLeService} does not talk to
+ * {@code BluetoothGatt} directly and can be driven by a simulated stack.
+ * <p>
+ * Values of the state and status constants mirror {@code BluetoothProfile} and
+ * {@code BluetoothGatt}.
+ */
+public interface GattClient {
+    int STATE_DISCONNECTED = 0;
+    int STATE_CONNECTED = 2;
+
+    int GATT_SUCCESS = 0;
+
+    /**
+     * @return Address of the remote device.
+     */
+    String getAddress();
+
+    /**
+     * Reconnects to the remote device after the connection has been dropped.
+     *
+     * @return true if the connection attempt was initiated successfully.
+     */
+    boolean connect();
+
+    /**
+     * Discovers the services offered by the remote device. The result is reported through
+     * {@link Callback#onServicesDiscovered(GattClient, int)}.
+     *
+     * @return true if the discovery was started.
+     */
+    boolean discoverServices();
+
+    /**
+     * Enables or disables notification/indication of a characteristic and writes the client
+     * characteristic configuration descriptor.
+     *
+     * @param service         Service that owns the characteristic.
+     * @param characteristic  Characteristic to act on.
+     * @param descriptorValue ENABLE_INDICATION_VALUE || ENABLE_NOTIFICATION_VALUE
+     * @param enabled         If true, enable notification.  False otherwise.
+     * @return true if the request was sent.
+     */
+    boolean setCharacteristicNotification(UUID service, UUID characteristic, byte[] descriptorValue, boolean enabled);
+
+    void disconnect();
+
+    void close();
+
+    /**
+     * GATT events the app cares about.
+     */
+    interface Callback {
+        void onConnectionStateChange(GattClient client, int status, int newState);
+
+        void onServicesDiscovered(GattClient client, int status);
+
+        void onCharacteristicRead(GattClient client, UUID characteristic, byte[] value, int status);
+
+        void onCharacteristicChanged(GattClient client, UUID characteristic, byte[] value);
+    }
+
+    /**
+     * Opens connections to remote devices.
+     */
+    interface Factory {
+        /**
+         * Creates a client and initiates the connection to {@code address}.
+         *
+         * @return The client or null if the device is unknown.
+         */
+        GattClient open(String address, Callback callback);
+    }
+}
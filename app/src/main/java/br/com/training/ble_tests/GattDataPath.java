@@ -0,0 +1,152 @@
+package br.com.training.ble_tests;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Data path of {@link BluetoothLeService}: turns raw characteristic values delivered by a
+ * {@link GattClient} into decoded measurements and hands them to a {@link Listener}.
+ * <p>
+ * It has no Android dependencies so the same code can be exercised by the simulated GATT
+ * stack in the unit tests. Calls may come from several GATT threads concurrently.
+ */
+public class GattDataPath {
+    static final UUID TEMPERATURE_MEASUREMENT = UUID.fromString(GattAttributes.CHARACTERISTIC_TEMPERATURE_MEASUREMENT);
+
+    private final Listener mListener;
+    private final ServiceMetrics mMetrics;
+    private final EventTracer mTracer;
+    private final AtomicReference<CaptureWriter> mCapture = new AtomicReference<>();
+    private final AtomicLong mReceived = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+
+    public GattDataPath(Listener listener) {
+        this(listener, new ServiceMetrics(), new EventTracer(1024));
+    }
+
+    public GattDataPath(Listener listener, ServiceMetrics metrics, EventTracer tracer) {
+        mListener = listener;
+        mMetrics = metrics;
+        mTracer = tracer;
+    }
+
+    /**
+     * Receives the value of a characteristic that was read or changed.
+     *
+     * @param address        Address of the device that sent the value.
+     * @param characteristic Characteristic UUID.
+     * @param value          Raw value.
+     */
+    public void onCharacteristicValue(final String address, final UUID characteristic, final byte[] value) {
+        onCharacteristicValue(address, characteristic, value, System.nanoTime());
+    }
+
+    /**
+     * Receives the value of a characteristic that was read or changed.
+     *
+     * @param address        Address of the device that sent the value.
+     * @param characteristic Characteristic UUID.
+     * @param value          Raw value.
+     * @param callbackAt     {@link System#nanoTime()} when the GATT callback was entered.
+     */
+    public void onCharacteristicValue(final String address, final UUID characteristic, final byte[] value,
+                                      final long callbackAt) {
+        mReceived.incrementAndGet();
+        final CaptureWriter capture = mCapture.get();
+        if (capture != null) capture(capture, address, characteristic, value, callbackAt);
+
+        final ServiceMetrics.Stream stream = mMetrics.stream(address, characteristic);
+        stream.increment(ServiceMetrics.COUNTER_RECEIVED);
+        final int length = value == null ? 0 : value.length;
+        mTracer.trace(EventTracer.LEVEL_INFO, EventTracer.EVENT_CHARACTERISTIC_CHANGED, stream.getDeviceSlot(), length, 0);
+
+        if (TEMPERATURE_MEASUREMENT.equals(characteristic)) {
+            final TemperatureMeasurement measurement = new TemperatureMeasurement();
+            if (!GattHTDecoder.decode(value, measurement)) {
+                mDropped.incrementAndGet();
+                stream.increment(ServiceMetrics.COUNTER_MALFORMED);
+                mTracer.trace(EventTracer.LEVEL_WARN, EventTracer.EVENT_MALFORMED, stream.getDeviceSlot(), length, 0);
+                mListener.onMalformed(stream, value);
+                return;
+            }
+            measurement.setReceivedAt(System.currentTimeMillis());
+
+            final long parsedAt = System.nanoTime();
+            stream.record(ServiceMetrics.STAGE_CALLBACK_TO_PARSE, parsedAt - callbackAt);
+            mTracer.trace(EventTracer.LEVEL_INFO, EventTracer.EVENT_DISPATCH_TEMPERATURE, stream.getDeviceSlot(),
+                    measurement.getMantissa(), measurement.getExponent());
+            mListener.onTemperature(stream, measurement);
+            stream.record(ServiceMetrics.STAGE_PARSE_TO_DISPATCH, System.nanoTime() - parsedAt);
+        } else {
+            final long parsedAt = System.nanoTime();
+            stream.record(ServiceMetrics.STAGE_CALLBACK_TO_PARSE, parsedAt - callbackAt);
+            mTracer.trace(EventTracer.LEVEL_INFO, EventTracer.EVENT_DISPATCH_OTHER, stream.getDeviceSlot(), length, 0);
+            mListener.onOtherData(stream, value);
+            stream.record(ServiceMetrics.STAGE_PARSE_TO_DISPATCH, System.nanoTime() - parsedAt);
+        }
+        stream.increment(ServiceMetrics.COUNTER_DISPATCHED);
+    }
+
+    private void capture(final CaptureWriter capture, final String address, final UUID characteristic,
+                         final byte[] value, final long callbackAt) {
+        try {
+            capture.append(address, characteristic, value, callbackAt);
+        } catch (IOException e) {
+            // Stop capturing rather than failing every notification from now on, unless another
+            // capture was started in the meantime.
+            if (!mCapture.compareAndSet(capture, null)) return;
+            mTracer.trace(EventTracer.LEVEL_WARN, EventTracer.EVENT_CAPTURE_FAILED,
+                    mMetrics.deviceSlot(address), capture.getCount(), 0);
+        }
+    }
+
+    /**
+     * Starts or stops appending every raw value received to a capture.
+     *
+     * @param capture Destination or null to stop capturing. The caller remains responsible for
+     *                closing it.
+     */
+    public void setCapture(CaptureWriter capture) {
+        mCapture.set(capture);
+    }
+
+    public CaptureWriter getCapture() {
+        return mCapture.get();
+    }
+
+    /**
+     * @return Number of values received since creation.
+     */
+    public long getReceivedCount() {
+        return mReceived.get();
+    }
+
+    /**
+     * @return Number of values rejected because they could not be decoded.
+     */
+    public long getDroppedCount() {
+        return mDropped.get();
+    }
+
+    public ServiceMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    public EventTracer getTracer() {
+        return mTracer;
+    }
+
+    /**
+     * Receives the output of the data path. The {@link ServiceMetrics.Stream} identifies the
+     * device and characteristic the value came from.
+     */
+    public interface Listener {
+        void onTemperature(ServiceMetrics.Stream stream, TemperatureMeasurement measurement);
+
+        void onOtherData(ServiceMetrics.Stream stream, byte[] value);
+
+        void onMalformed(ServiceMetrics.Stream stream, byte[] value);
+    }
+}
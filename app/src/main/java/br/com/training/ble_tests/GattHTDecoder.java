@@ -0,0 +1,219 @@
+package br.com.training.ble_tests;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes the raw value of the Temperature Measurement characteristic without going through
+ * {@code BluetoothGattCharacteristic}, so the same code runs on the GATT thread, in the JVM
+ * unit tests and in the benchmarks.
+ *
+ * {@link <https://www.bluetooth.com/wp-content/uploads/Sitecore-Media-Library/Gatt/Xml/Characteristics/org.bluetooth.characteristic.temperature_measurement.xml>}
+ */
+public final class GattHTDecoder {
+    static final int TEMPERATURE_UNIT_FLAG = 0x01; // 1 bit
+    static final int TIMESTAMP_FLAG = 0x02; // 1 bit
+    static final int TEMPERATURE_TYPE_FLAG = 0x04; // 1 bit
+
+    /** IEEE-11073 special values of the 24-bit mantissa. */
+    static final int MANTISSA_NAN = 0x007FFFFF;
+    static final int MANTISSA_NRES = -0x00800000;
+    static final int MANTISSA_POSITIVE_INFINITY = 0x007FFFFE;
+    static final int MANTISSA_NEGATIVE_INFINITY = -0x007FFFFE;
+    static final int MANTISSA_RESERVED = -0x007FFFFF;
+
+    private static final int FLAGS_LENGTH = 1;
+    private static final int TEMPERATURE_LENGTH = 4;
+    private static final int TIMESTAMP_LENGTH = 7;
+    private static final int TYPE_LENGTH = 1;
+
+    /**
+     * Powers of ten for every possible 8-bit exponent, computed the same way
+     * {@code BluetoothGattCharacteristic#getFloatValue} does so results are bit-identical.
+     */
+    private static final double[] POWERS_OF_TEN = new double[256];
+
+    static {
+        for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = Math.pow(10, (byte) i);
+        }
+    }
+
+    private GattHTDecoder() {
+    }
+
+    /**
+     * Decodes a whole characteristic value.
+     *
+     * @param value Raw characteristic value
+     * @param out   Holder that receives the decoded fields
+     * @return false if the packet is malformed, in which case {@code out} is undefined
+     */
+    public static boolean decode(final byte[] value, final TemperatureMeasurement out) {
+        return value != null && decode(value, 0, value.length, out);
+    }
+
+    /**
+     * Decodes {@code length} bytes of {@code value} starting at {@code offset}.
+     *
+     * @param value  Buffer holding the characteristic value
+     * @param offset Offset of the flags field
+     * @param length Number of bytes of the characteristic value
+     * @param out    Holder that receives the decoded fields
+     * @return false if the packet is malformed, in which case {@code out} is undefined
+     */
+    public static boolean decode(final byte[] value, int offset, final int length,
+                                 final TemperatureMeasurement out) {
+        if (length < FLAGS_LENGTH + TEMPERATURE_LENGTH) return false;
+
+        final int flags = value[offset++] & 0xFF;
+        final boolean timestampIncluded = (flags & TIMESTAMP_FLAG) > 0;
+        final boolean temperatureTypeIncluded = (flags & TEMPERATURE_TYPE_FLAG) > 0;
+
+        final int expected = FLAGS_LENGTH + TEMPERATURE_LENGTH
+                + (timestampIncluded ? TIMESTAMP_LENGTH : 0)
+                + (temperatureTypeIncluded ? TYPE_LENGTH : 0);
+        if (length < expected) return false;
+
+        out.reset();
+        out.setFahrenheit((flags & TEMPERATURE_UNIT_FLAG) > 0);
+
+        final int mantissa = ((value[offset] & 0xFF)
+                | (value[offset + 1] & 0xFF) << 8
+                | value[offset + 2] << 16) << 8 >> 8; // sign-extend 24 bits
+        final int exponent = value[offset + 3];
+        out.setTemperature(mantissa, exponent, toFloat(mantissa, exponent));
+        offset += TEMPERATURE_LENGTH;
+
+        if (timestampIncluded) {
+            out.setTimestamp((value[offset] & 0xFF) | (value[offset + 1] & 0xFF) << 8,
+                    value[offset + 2] & 0xFF,
+                    value[offset + 3] & 0xFF,
+                    value[offset + 4] & 0xFF,
+                    value[offset + 5] & 0xFF,
+                    value[offset + 6] & 0xFF);
+            offset += TIMESTAMP_LENGTH;
+        }
+
+        if (temperatureTypeIncluded) {
+            out.setType(value[offset]);
+        }
+
+        return true;
+    }
+
+    /**
+     * Decodes {@code length} bytes of {@code buffer} starting at the absolute {@code offset},
+     * without copying them out of the buffer and without moving its position.
+     *
+     * @param buffer Buffer holding the characteristic value, e.g. a memory-mapped file
+     * @param offset Absolute offset of the flags field
+     * @param length Number of bytes of the characteristic value
+     * @param out    Holder that receives the decoded fields
+     * @return false if the packet is malformed, in which case {@code out} is undefined
+     */
+    public static boolean decode(final ByteBuffer buffer, int offset, final int length,
+                                 final TemperatureMeasurement out) {
+        if (length < FLAGS_LENGTH + TEMPERATURE_LENGTH) return false;
+
+        final int flags = buffer.get(offset++) & 0xFF;
+        final boolean timestampIncluded = (flags & TIMESTAMP_FLAG) > 0;
+        final boolean temperatureTypeIncluded = (flags & TEMPERATURE_TYPE_FLAG) > 0;
+
+        final int expected = FLAGS_LENGTH + TEMPERATURE_LENGTH
+                + (timestampIncluded ? TIMESTAMP_LENGTH : 0)
+                + (temperatureTypeIncluded ? TYPE_LENGTH : 0);
+        if (length < expected) return false;
+
+        out.reset();
+        out.setFahrenheit((flags & TEMPERATURE_UNIT_FLAG) > 0);
+
+        final int mantissa = ((buffer.get(offset) & 0xFF)
+                | (buffer.get(offset + 1) & 0xFF) << 8
+                | buffer.get(offset + 2) << 16) << 8 >> 8; // sign-extend 24 bits
+        final int exponent = buffer.get(offset + 3);
+        out.setTemperature(mantissa, exponent, toFloat(mantissa, exponent));
+        offset += TEMPERATURE_LENGTH;
+
+        if (timestampIncluded) {
+            out.setTimestamp((buffer.get(offset) & 0xFF) | (buffer.get(offset + 1) & 0xFF) << 8,
+                    buffer.get(offset + 2) & 0xFF,
+                    buffer.get(offset + 3) & 0xFF,
+                    buffer.get(offset + 4) & 0xFF,
+                    buffer.get(offset + 5) & 0xFF,
+                    buffer.get(offset + 6) & 0xFF);
+            offset += TIMESTAMP_LENGTH;
+        }
+
+        if (temperatureTypeIncluded) {
+            out.setType(buffer.get(offset));
+        }
+
+        return true;
+    }
+
+    /**
+     * Converts an IEEE-11073 32-bit FLOAT to a Java float.
+     *
+     * @param mantissa Signed 24-bit mantissa
+     * @param exponent Signed 8-bit exponent
+     * @return float
+     */
+    static float toFloat(final int mantissa, final int exponent) {
+        return (float) (mantissa * POWERS_OF_TEN[exponent & 0xFF]);
+    }
+
+    /**
+     * Whether a mantissa is one of the IEEE-11073 NaN, NRes, infinity or reserved values, which
+     * {@link #toFloat(int, int)} turns into meaningless numbers around ±8.4e6.
+     *
+     * @param mantissa Signed 24-bit mantissa
+     * @return boolean
+     */
+    static boolean isSpecial(final int mantissa) {
+        switch (mantissa) {
+            case MANTISSA_NAN:
+            case MANTISSA_NRES:
+            case MANTISSA_POSITIVE_INFINITY:
+            case MANTISSA_NEGATIVE_INFINITY:
+            case MANTISSA_RESERVED:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Encodes a Temperature Measurement value, the reverse of {@link #decode(byte[], TemperatureMeasurement)},
+     * for the simulated devices of the tests and the benchmarks.
+     *
+     * @param timestamp Whether the time stamp fields are included
+     * @param type      Whether the temperature type is included, always "body (general)"
+     * @return Characteristic value
+     */
+    static byte[] encode(int mantissa, int exponent, boolean fahrenheit, boolean timestamp, boolean type,
+                         int year, int month, int day, int hours, int minutes, int seconds) {
+        final byte[] packet = new byte[FLAGS_LENGTH + TEMPERATURE_LENGTH
+                + (timestamp ? TIMESTAMP_LENGTH : 0) + (type ? TYPE_LENGTH : 0)];
+        int offset = 0;
+        packet[offset++] = (byte) ((fahrenheit ? TEMPERATURE_UNIT_FLAG : 0)
+                | (timestamp ? TIMESTAMP_FLAG : 0)
+                | (type ? TEMPERATURE_TYPE_FLAG : 0));
+        packet[offset++] = (byte) mantissa;
+        packet[offset++] = (byte) (mantissa >> 8);
+        packet[offset++] = (byte) (mantissa >> 16);
+        packet[offset++] = (byte) exponent;
+        if (timestamp) {
+            packet[offset++] = (byte) year;
+            packet[offset++] = (byte) (year >> 8);
+            packet[offset++] = (byte) month;
+            packet[offset++] = (byte) day;
+            packet[offset++] = (byte) hours;
+            packet[offset++] = (byte) minutes;
+            packet[offset++] = (byte) seconds;
+        }
+        if (type) {
+            packet[offset] = 2; // Body (general)
+        }
+        return packet;
+    }
+}
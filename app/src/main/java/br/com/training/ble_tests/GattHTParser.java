@@ -5,8 +5,6 @@ import android.bluetooth.BluetoothGattCharacteristic;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.util.Calendar;
-
 /**
  * Parse for temperature.
  *
@@ -15,10 +13,6 @@ import java.util.Calendar;
  * @copyright Copyright (c) 2017, NUTES UEPB
  */
 public class GattHTParser {
-    private static final byte TEMPERATURE_UNIT_FLAG = 0x01; // 1 bit
-    private static final byte TIMESTAMP_FLAG = 0x02; // 1 bit
-    private static final byte TEMPERATURE_TYPE_FLAG = 0x04; // 1 bit
-
     /**
      * Parse for the PHILIPS device, according to GATT.
      * Supported Models: DL8740.
@@ -30,50 +24,29 @@ public class GattHTParser {
      * @throws JSONException
      */
     public static JSONObject parse(final BluetoothGattCharacteristic characteristic) throws JSONException {
-        JSONObject result = new JSONObject();
-
-        int offset = 0;
-        final int flags = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT8, offset++);
-
-        /**
-         * false 	Temperature is in Celsius degrees
-         * true 	Temperature is in Fahrenheit degrees
-         */
-        final boolean fahrenheit = (flags & TEMPERATURE_UNIT_FLAG) > 0;
-
-        /**
-         * false 	No Timestamp in the packet
-         * true 	There is a timestamp information
-         */
-        final boolean timestampIncluded = (flags & TIMESTAMP_FLAG) > 0;
-
-        /**
-         * false 	Temperature type is not included
-         * true 	Temperature type included in the packet
-         */
-        final boolean temperatureTypeIncluded = (flags & TEMPERATURE_TYPE_FLAG) > 0;
-
-        final float tempValue = characteristic.getFloatValue(BluetoothGattCharacteristic.FORMAT_FLOAT, offset);
-        offset += 4;
-
-        Calendar timestamp = null;
-        if (timestampIncluded) {
-            timestamp = GattDateTimeParser.parse(characteristic, offset);
-            offset += 7;
+        final TemperatureMeasurement measurement = new TemperatureMeasurement();
+        if (!GattHTDecoder.decode(characteristic.getValue(), measurement)) {
+            throw new JSONException("Malformed temperature measurement");
         }
 
-        int type = -1;
-        if (temperatureTypeIncluded) {
-            type = characteristic.getValue()[offset];
-        }
+        return toJson(measurement);
+    }
 
-        String unit = fahrenheit ? "°F" : "°C";
+    /**
+     * Converts an already decoded measurement to the JSON sent to the UI.
+     *
+     * @param measurement TemperatureMeasurement
+     * @return JSONObject
+     * @throws JSONException
+     */
+    public static JSONObject toJson(final TemperatureMeasurement measurement) throws JSONException {
+        JSONObject result = new JSONObject();
 
         /**
          * Populating the JSON
          */
-        result.put("temperature", tempValue);
-        result.put("temperatureUnit", unit);
+        result.put("temperature", measurement.getTemperature());
+        result.put("temperatureUnit", measurement.getUnit());
         result.put("timestamp", DateUtils.getCurrentDatetime(null));
 
         return result;
@@ -0,0 +1,29 @@
+package br.com.training.ble_tests;
+
+/**
+ * Provides useful methods for printing raw characteristic values.
+ */
+public final class HexUtils {
+    private static final char[] DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private HexUtils() {
+    }
+
+    /**
+     * Formats every byte as two upper case hex digits followed by a space, the same output as
+     * {@code String.format("%02X ", b)} for each byte, without the per-byte allocations.
+     *
+     * @param data Bytes to format
+     * @return String
+     */
+    public static String toHexString(final byte[] data) {
+        final char[] chars = new char[data.length * 3];
+        int i = 0;
+        for (byte b : data) {
+            chars[i++] = DIGITS[(b >> 4) & 0x0F];
+            chars[i++] = DIGITS[b & 0x0F];
+            chars[i++] = ' ';
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,143 @@
+package br.com.training.ble_tests;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with fixed log-linear buckets.
+ * <p>
+ * Values below 8 ns get a bucket each; above that every power of two is split in 8 linear
+ * sub-buckets, so any recorded value is known within 12.5%. Values of 2^40 ns (about 18
+ * minutes) and more share the last bucket. Recording never allocates: it is an atomic add to
+ * the bucket and one to the sum, plus a compare-and-set loop on the max when the value exceeds it.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    public static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos Latency in nanoseconds, negative values count as 0.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        mCounts.incrementAndGet(bucketOf(nanos));
+        mSum.addAndGet(nanos);
+
+        long max;
+        while (nanos > (max = mMax.get()) && !mMax.compareAndSet(max, nanos)) {
+            // Lost the race against another thread, try again with the new max.
+        }
+    }
+
+    /**
+     * Copies the current state. Concurrent recordings may or may not be included.
+     *
+     * @return Snapshot
+     */
+    public Snapshot snapshot() {
+        final long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = mCounts.get(i);
+        }
+        return new Snapshot(counts, mSum.get(), mMax.get());
+    }
+
+    static int bucketOf(final long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) nanos;
+
+        final int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent >= MAX_EXPONENT) return BUCKETS - 1;
+
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS
+                + (int) ((nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Smallest value that falls in the bucket.
+     */
+    static long lowerBoundOf(final int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+
+        final int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * Largest value that falls in the bucket.
+     */
+    static long upperBoundOf(final int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : lowerBoundOf(bucket + 1) - 1;
+    }
+
+    /**
+     * Immutable copy of a {@link LatencyHistogram}.
+     */
+    public static final class Snapshot {
+        private final long[] mCounts;
+        private final long mSum;
+        private final long mMax;
+        private final long mCount;
+
+        Snapshot(long[] counts, long sum, long max) {
+            mCounts = counts;
+            mSum = sum;
+            mMax = max;
+
+            long count = 0;
+            for (long c : counts) count += c;
+            mCount = count;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getMax() {
+            return mMax;
+        }
+
+        /**
+         * @return Mean latency in nanoseconds, 0 if nothing was recorded.
+         */
+        public double getMean() {
+            return mCount == 0 ? 0 : (double) mSum / mCount;
+        }
+
+        /**
+         * Upper bound of the bucket holding the given quantile.
+         *
+         * @param quantile From 0 to 1, e.g. 0.99
+         * @return Latency in nanoseconds, 0 if nothing was recorded.
+         */
+        public long getValueAtQuantile(final double quantile) {
+            if (mCount == 0) return 0;
+
+            final long rank = Math.max(1, (long) Math.ceil(quantile * mCount));
+            long seen = 0;
+            for (int i = 0; i < mCounts.length; i++) {
+                seen += mCounts[i];
+                if (seen >= rank) return Math.min(upperBoundOf(i), mMax);
+            }
+            return mMax;
+        }
+
+        /**
+         * Count of a single bucket, see {@link LatencyHistogram#BUCKETS}.
+         */
+        public long getBucketCount(final int bucket) {
+            return mCounts[bucket];
+        }
+
+        long getSum() {
+            return mSum;
+        }
+    }
+}
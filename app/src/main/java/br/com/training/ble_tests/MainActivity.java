@@ -4,9 +4,6 @@ import android.Manifest;
 import android.app.Activity;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothGatt;
-import android.bluetooth.BluetoothGattCharacteristic;
-import android.bluetooth.BluetoothGattDescriptor;
 import android.bluetooth.BluetoothManager;
 import android.bluetooth.le.BluetoothLeScanner;
 import android.bluetooth.le.ScanCallback;
@@ -35,7 +32,6 @@ import androidx.core.app.ActivityCompat;
 
 import java.lang.reflect.Method;
 import java.util.List;
-import java.util.UUID;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
@@ -51,12 +47,18 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
     @BindView(R.id.txt_temperature)
     TextView txtTemperature;
 
+    @BindView(R.id.chart_temperature)
+    TemperatureChartView chartTemperature;
+
     private static String TAG = "MainActivity";
 
     private static final int REQUEST_ENABLE_BT = 1;
     private static final int REQUEST_ENABLE_LOCATION = 2;
     private static final long SCAN_PERIOD = 15000;  // Stops scanning after 15 seconds.
 
+    /** Whether an activity was already created in this process, see {@link StartupMetrics}. */
+    private static boolean sCreated;
+
     private BluetoothAdapter mBluetoothAdapter;
     private BluetoothLeScanner mBluetoothLeScanner;
     private BluetoothDevice mDevice;
@@ -66,22 +68,33 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
     private Handler mHandler;
 
     private BluetoothLeService mBluetoothLeService;
+    private ServiceMetrics mServiceMetrics;
+    private EventTracer mEventTracer;
     private boolean gattServiceDiscovered = false;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        final long startedAt = System.nanoTime();
+        final int start = sCreated ? StartupMetrics.START_WARM : StartupMetrics.START_COLD;
+        sCreated = true;
         super.onCreate(savedInstanceState);
+
+        // The service is only created once this method returns, so the connection to the last
+        // device is opened on a background thread while the views are built, for it to adopt.
+        BluetoothLeService.connectEarly(this);
+        startService(new Intent(this, BluetoothLeService.class)
+                .putExtra(BluetoothLeService.EXTRA_STARTED_AT, startedAt)
+                .putExtra(BluetoothLeService.EXTRA_START, start));
+        bindService(new Intent(this, BluetoothLeService.class), mServiceConnection, BIND_AUTO_CREATE);
+
         setContentView(R.layout.activity_main);
         ButterKnife.bind(this);
+        mDeviceAddress = BluetoothLeService.getLastDeviceAddress(this);
 
-        mDeviceAddress = "1C:87:74:01:73:10";
         mHandler = new Handler();
 
         buttonScanDevices.setOnClickListener(this);
 
-        Intent gattServiceIntent = new Intent(this, BluetoothLeService.class);
-        bindService(gattServiceIntent, mServiceConnection, BIND_AUTO_CREATE);
-
         initComponents();
     }
 
@@ -119,6 +132,16 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
         mBluetoothLeScanner = mBluetoothAdapter.getBluetoothLeScanner();
     }
 
+    @Override
+    protected void onRestart() {
+        final long startedAt = System.nanoTime();
+        super.onRestart();
+
+        startService(new Intent(this, BluetoothLeService.class)
+                .putExtra(BluetoothLeService.EXTRA_STARTED_AT, startedAt)
+                .putExtra(BluetoothLeService.EXTRA_START, StartupMetrics.START_HOT));
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
@@ -130,16 +153,6 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
         }
 
         registerReceiver(mGattUpdateReceiver, makeGattUpdateIntentFilter());
-
-        if (mBluetoothLeService != null) {
-            if (!mBluetoothLeService.connect(mDeviceAddress)) {
-                mBluetoothLeService.disconnect();
-                mBluetoothLeService.close();
-            }
-            final boolean result = mBluetoothLeService.connect(mDeviceAddress);
-
-            Log.d(TAG, "Connect request result = " + result);
-        }
     }
 
     @Override
@@ -156,6 +169,9 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
         super.onDestroy();
 
         unbindService(mServiceConnection);
+        // The service outlives the activity only across configuration changes. When the user
+        // leaves, stop it so it closes the GATT link and the upload outbox instead of being killed.
+        if (isFinishing()) stopService(new Intent(this, BluetoothLeService.class));
 
         mDevice = null;
 
@@ -283,20 +299,27 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
     private final ServiceConnection mServiceConnection = new ServiceConnection() {
         @Override
         public void onServiceConnected(ComponentName componentName, IBinder iBinder) {
-            mBluetoothLeService = ((BluetoothLeService.LocalBinder) iBinder).getService();
+            final BluetoothLeService.LocalBinder binder = (BluetoothLeService.LocalBinder) iBinder;
+            mBluetoothLeService = binder.getService();
+            mServiceMetrics = binder.getMetrics();
+            mEventTracer = binder.getTracer();
+            chartTemperature.setSeries(binder.getHistory().get(mDeviceAddress));
 
             if (!mBluetoothLeService.initialize()) {
                 Log.e(TAG, "Unable to initialize Bluetooth");
                 finish();
             }
 
-            // Automatically connects to the device upon successful start-up initialization.
+            // The service is already connecting to the last device, this only covers a failed start.
             tryingConnect();
         }
 
         @Override
         public void onServiceDisconnected(ComponentName componentName) {
             mBluetoothLeService = null;
+            mServiceMetrics = null;
+            mEventTracer = null;
+            chartTemperature.setSeries(null);
         }
     };
 
@@ -320,29 +343,28 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
             } else if (BluetoothLeService.ACTION_GATT_SERVICES_DISCOVERED.equals(action)) {
                 Log.w(TAG, "ACTION_GATT_SERVICES_DISCOVERED");
                 gattServiceDiscovered = true;
-                listenTemperature();
             } else if (BluetoothLeService.ACTION_DATA_AVAILABLE.equals(action)) {
                 String jsonData = intent.getStringExtra(BluetoothLeService.EXTRA_DATA);
 
                 txtTemperature.setText(jsonData);
+                chartTemperature.invalidate();
+
+                // Replayed values have stream ids of their own data path, not of mServiceMetrics.
+                if (mServiceMetrics != null && !intent.getBooleanExtra(BluetoothLeService.EXTRA_REPLAY, false)) {
+                    final int streamId = intent.getIntExtra(BluetoothLeService.EXTRA_STREAM_ID, -1);
+                    final long latency = System.nanoTime() - intent.getLongExtra(BluetoothLeService.EXTRA_DISPATCHED_AT, 0);
+                    mServiceMetrics.recordDisplayed(streamId, latency);
+
+                    final ServiceMetrics.Stream stream = mServiceMetrics.getStream(streamId);
+                    if (stream != null) {
+                        mEventTracer.trace(EventTracer.LEVEL_INFO, EventTracer.EVENT_DISPLAYED,
+                                stream.getDeviceSlot(), streamId, latency);
+                    }
+                }
             }
         }
     };
 
-    /**
-     * Temperature Characteristic indication.
-     */
-    public void listenTemperature() {
-        BluetoothGatt mBluetoothGatt = mBluetoothLeService.getBluetoothGatt();
-
-        if (mBluetoothGatt == null) return;
-
-        BluetoothGattCharacteristic bchar = mBluetoothGatt.getService(UUID.fromString(GattAttributes.SERVICE_HEALTH_THERMOMETER))
-                .getCharacteristic(UUID.fromString(GattAttributes.CHARACTERISTIC_TEMPERATURE_MEASUREMENT));
-
-        mBluetoothLeService.setCharacteristicNotification(bchar, BluetoothGattDescriptor.ENABLE_INDICATION_VALUE, true);
-    }
-
     /**
      * Connect to device.
      *
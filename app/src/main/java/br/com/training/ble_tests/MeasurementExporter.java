@@ -0,0 +1,410 @@
+package br.com.training.ble_tests;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.TimeZone;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams measurements to an {@link OutputStream} or {@link Writer} as NDJSON (one JSON object
+ * per line) or CSV, without building {@code JSONObject}s.
+ * <p>
+ * Each record is formatted by hand into a reused line buffer, so memory stays constant whatever
+ * the size of the export. Temperatures are printed as the exact decimal encoded by the
+ * IEEE-11073 mantissa and exponent, e.g. {@code 36.60} for 3660e-2, instead of going through
+ * a binary float. NDJSON records look like:
+ * <pre>
+ * {"address":"1C:87:74:01:73:10","temperature":36.6,"temperatureUnit":"°C","type":2,"measuredAt":"2020-03-01T10:20:30","receivedAt":"2020-03-01T13:20:31.250Z"}
+ * </pre>
+ * {@code measuredAt} is the device time stamp, {@code receivedAt} the UTC time the reading was
+ * received; the {@code timestamp} of {@link GattHTParser#toJson} is a receive time, so that key is
+ * not used. Values the device did not send are {@code null} in NDJSON and empty in CSV.
+ * Not thread-safe.
+ */
+public class MeasurementExporter implements Closeable, Flushable {
+    public static final int FORMAT_NDJSON = 0;
+    public static final int FORMAT_CSV = 1;
+
+    static final String CSV_HEADER = "address,temperature,temperatureUnit,type,measuredAt,receivedAt";
+
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+    /** Room for every field of a record except the address. */
+    private static final int RECORD_SIZE = 512;
+
+    private static final DateUtils.Formatter RECEIVED_AT =
+            DateUtils.formatter("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", TimeZone.getTimeZone("UTC"));
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final int mFormat;
+    private final Writer mWriter;
+    private final OutputStream mStream;
+    private final byte[] mBytes;
+    private int mByteCount;
+    private long mFlushedBytes;
+    private char[] mLine = new char[RECORD_SIZE];
+    private int mLength;
+    private long mCount;
+
+    /**
+     * Exports to a byte stream, encoded as UTF-8.
+     *
+     * @param out    Destination, closed by {@link #close()}
+     * @param format {@link #FORMAT_NDJSON} or {@link #FORMAT_CSV}
+     * @param gzip   Whether to compress the output
+     * @throws IOException
+     */
+    public MeasurementExporter(OutputStream out, int format, boolean gzip) throws IOException {
+        this(format, null, gzip ? new GZIPOutputStream(out, OUTPUT_BUFFER_SIZE) : out);
+    }
+
+    /**
+     * Exports to a character stream.
+     *
+     * @param out    Destination, closed by {@link #close()}
+     * @param format {@link #FORMAT_NDJSON} or {@link #FORMAT_CSV}
+     * @throws IOException
+     */
+    public MeasurementExporter(Writer out, int format) throws IOException {
+        this(format, out, null);
+    }
+
+    private MeasurementExporter(int format, Writer writer, OutputStream stream) throws IOException {
+        if (format != FORMAT_NDJSON && format != FORMAT_CSV) {
+            throw new IllegalArgumentException("Unknown format " + format);
+        }
+        mFormat = format;
+        mWriter = writer;
+        mStream = stream;
+        mBytes = stream == null ? null : new byte[OUTPUT_BUFFER_SIZE];
+
+        if (format == FORMAT_CSV) {
+            append(CSV_HEADER);
+            append('\n');
+            writeLine();
+        }
+    }
+
+    /**
+     * Writes one measurement.
+     *
+     * @param address     Device address
+     * @param measurement Decoded measurement
+     * @throws IOException
+     */
+    public void write(final String address, final TemperatureMeasurement measurement) throws IOException {
+        mLength = 0;
+        ensureCapacity(RECORD_SIZE + 6 * address.length());
+
+        if (mFormat == FORMAT_NDJSON) {
+            append("{\"address\":");
+            appendJsonString(address);
+            append(",\"temperature\":");
+            if (!appendTemperature(measurement.getMantissa(), measurement.getExponent())) append("null");
+            append(",\"temperatureUnit\":");
+            appendJsonString(measurement.getUnit());
+            append(",\"type\":");
+            if (measurement.getType() == TemperatureMeasurement.TYPE_NOT_PRESENT) {
+                append("null");
+            } else {
+                appendInt(measurement.getType());
+            }
+            append(",\"measuredAt\":");
+            if (measurement.isTimestampPresent()) {
+                append('"');
+                appendDeviceTimestamp(measurement);
+                append('"');
+            } else {
+                append("null");
+            }
+            append(",\"receivedAt\":");
+            if (measurement.getReceivedAt() != 0) {
+                append('"');
+                appendUtcTimestamp(measurement.getReceivedAt());
+                append('"');
+            } else {
+                append("null");
+            }
+            append('}');
+        } else {
+            appendCsvString(address);
+            append(',');
+            appendTemperature(measurement.getMantissa(), measurement.getExponent());
+            append(',');
+            append(measurement.getUnit());
+            append(',');
+            if (measurement.getType() != TemperatureMeasurement.TYPE_NOT_PRESENT) {
+                appendInt(measurement.getType());
+            }
+            append(',');
+            if (measurement.isTimestampPresent()) appendDeviceTimestamp(measurement);
+            append(',');
+            if (measurement.getReceivedAt() != 0) appendUtcTimestamp(measurement.getReceivedAt());
+        }
+        append('\n');
+        writeLine();
+        mCount++;
+    }
+
+    /**
+     * Exports the Temperature Measurement values of a capture. {@code receivedAt} is rebuilt
+     * from the start of the capture and the offset of each value; other characteristics and
+     * malformed values are skipped.
+     *
+     * @param capture File written by {@link CaptureWriter}
+     * @return Number of measurements written
+     * @throws IOException
+     */
+    public long writeCapture(final File capture) throws IOException {
+        final TemperatureMeasurement measurement = new TemperatureMeasurement();
+        final CaptureReader reader = new CaptureReader(capture);
+        long written = 0;
+        try {
+            while (reader.next()) {
+                if (!GattDataPath.TEMPERATURE_MEASUREMENT.equals(reader.getCharacteristic())) continue;
+                if (!GattHTDecoder.decode(reader.getValue(), measurement)) continue;
+
+                measurement.setReceivedAt(reader.getStartedAt() + reader.getTimestamp() / 1_000_000L);
+                write(reader.getAddress(), measurement);
+                written++;
+            }
+        } finally {
+            reader.close();
+        }
+        return written;
+    }
+
+    /**
+     * @return Number of measurements written.
+     */
+    public long getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return Number of bytes written so far, before compression, or -1 when exporting to a
+     * {@link Writer}.
+     */
+    public long getByteCount() {
+        return mStream == null ? -1 : mFlushedBytes + mByteCount;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (mStream != null) {
+            flushBytes();
+            mStream.flush();
+        } else {
+            mWriter.flush();
+        }
+    }
+
+    /**
+     * Flushes the buffered records, finishes the gzip trailer if any and closes the destination.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (mStream != null) {
+            try {
+                flushBytes();
+            } finally {
+                mStream.close();
+            }
+        } else {
+            mWriter.close();
+        }
+    }
+
+    /**
+     * Appends the exact decimal value of an IEEE-11073 FLOAT.
+     *
+     * @return false, with nothing appended, for the NaN, NRes, infinity and reserved values
+     */
+    private boolean appendTemperature(final int mantissa, final int exponent) {
+        if (GattHTDecoder.isSpecial(mantissa)) return false;
+
+        if (mantissa == 0 || exponent == 0) {
+            appendInt(mantissa);
+            return true;
+        }
+        if (exponent > 0) {
+            appendInt(mantissa);
+            for (int i = 0; i < exponent; i++) mLine[mLength++] = '0';
+            return true;
+        }
+
+        // Print the digits, then slide the fractional part right to make room for the point.
+        if (mantissa < 0) mLine[mLength++] = '-';
+        final int start = mLength;
+        appendInt(Math.abs(mantissa));
+        final int digits = mLength - start;
+        final int scale = -exponent;
+        if (digits > scale) {
+            final int point = mLength - scale;
+            System.arraycopy(mLine, point, mLine, point + 1, scale);
+            mLine[point] = '.';
+            mLength++;
+        } else {
+            final int zeros = scale - digits;
+            System.arraycopy(mLine, start, mLine, start + 2 + zeros, digits);
+            mLine[start] = '0';
+            mLine[start + 1] = '.';
+            for (int i = 0; i < zeros; i++) mLine[start + 2 + i] = '0';
+            mLength += 2 + zeros;
+        }
+        return true;
+    }
+
+    /**
+     * Appends the device time stamp as "yyyy-MM-dd'T'HH:mm:ss", in the device local time.
+     */
+    private void appendDeviceTimestamp(final TemperatureMeasurement measurement) {
+        appendDigits(measurement.getYear(), 4);
+        mLine[mLength++] = '-';
+        appendDigits(measurement.getMonth(), 2);
+        mLine[mLength++] = '-';
+        appendDigits(measurement.getDay(), 2);
+        mLine[mLength++] = 'T';
+        appendDigits(measurement.getHours(), 2);
+        mLine[mLength++] = ':';
+        appendDigits(measurement.getMinutes(), 2);
+        mLine[mLength++] = ':';
+        appendDigits(measurement.getSeconds(), 2);
+    }
+
+    /**
+     * Appends milliseconds since epoch as "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'".
+     */
+    private void appendUtcTimestamp(final long millis) {
+        mLength = RECEIVED_AT.format(millis, mLine, mLength);
+    }
+
+    private void appendJsonString(final String value) {
+        mLine[mLength++] = '"';
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                mLine[mLength++] = '\\';
+                mLine[mLength++] = c;
+            } else if (c < 0x20) {
+                mLine[mLength++] = '\\';
+                mLine[mLength++] = 'u';
+                mLine[mLength++] = '0';
+                mLine[mLength++] = '0';
+                mLine[mLength++] = HEX[c >> 4];
+                mLine[mLength++] = HEX[c & 0xF];
+            } else {
+                mLine[mLength++] = c;
+            }
+        }
+        mLine[mLength++] = '"';
+    }
+
+    private void appendCsvString(final String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            final char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            append(value);
+            return;
+        }
+        mLine[mLength++] = '"';
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"') mLine[mLength++] = '"';
+            mLine[mLength++] = c;
+        }
+        mLine[mLength++] = '"';
+    }
+
+    private void appendInt(int value) {
+        if (value < 0) {
+            mLine[mLength++] = '-';
+            value = -value; // mantissas and types never reach Integer.MIN_VALUE
+        }
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) digits++;
+        putDigits(mLine, mLength, value, digits);
+        mLength += digits;
+    }
+
+    private void appendDigits(final int value, final int digits) {
+        putDigits(mLine, mLength, value, digits);
+        mLength += digits;
+    }
+
+    /** Writes the last {@code digits} decimal digits of a non-negative value, zero padded. */
+    private static void putDigits(final char[] out, final int offset, int value, final int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            out[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private void append(final String value) {
+        value.getChars(0, value.length(), mLine, mLength);
+        mLength += value.length();
+    }
+
+    private void append(final char c) {
+        mLine[mLength++] = c;
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (mLine.length < capacity) mLine = new char[capacity];
+    }
+
+    /**
+     * Hands the line buffer to the writer, or encodes it as UTF-8 into the output buffer.
+     */
+    private void writeLine() throws IOException {
+        if (mStream == null) {
+            mWriter.write(mLine, 0, mLength);
+            return;
+        }
+        final byte[] bytes = mBytes;
+        final int limit = bytes.length - 4;
+        int count = mByteCount;
+        for (int i = 0; i < mLength; i++) {
+            if (count > limit) {
+                mByteCount = count;
+                flushBytes();
+                count = 0;
+            }
+            final char c = mLine[i];
+            if (c < 0x80) {
+                bytes[count++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[count++] = (byte) (0xC0 | c >> 6);
+                bytes[count++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < mLength
+                    && Character.isLowSurrogate(mLine[i + 1])) {
+                final int codePoint = Character.toCodePoint(c, mLine[++i]);
+                bytes[count++] = (byte) (0xF0 | codePoint >> 18);
+                bytes[count++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                bytes[count++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                bytes[count++] = (byte) (0x80 | codePoint & 0x3F);
+            } else {
+                bytes[count++] = (byte) (0xE0 | c >> 12);
+                bytes[count++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[count++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        mByteCount = count;
+    }
+
+    private void flushBytes() throws IOException {
+        if (mByteCount > 0) {
+            mStream.write(mBytes, 0, mByteCount);
+            mFlushedBytes += mByteCount;
+            mByteCount = 0;
+        }
+    }
+}
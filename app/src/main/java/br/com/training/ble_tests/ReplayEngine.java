@@ -0,0 +1,108 @@
+package br.com.training.ble_tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds a capture written by {@link CaptureWriter} back through a {@link GattDataPath}.
+ * <p>
+ * At speed 1 values are delivered with the gaps they were captured with, at speed N the gaps
+ * are divided by N and at {@link #AS_FAST_AS_POSSIBLE} they are ignored, which turns a
+ * production capture into a throughput benchmark of the data path.
+ */
+public class ReplayEngine {
+    public static final double REAL_TIME = 1;
+    public static final double AS_FAST_AS_POSSIBLE = 0;
+
+    private final GattDataPath mDataPath;
+    private volatile boolean mCancelled;
+
+    public ReplayEngine(GattDataPath dataPath) {
+        mDataPath = dataPath;
+    }
+
+    /**
+     * Replays a whole capture on the calling thread.
+     *
+     * @param file  Capture file
+     * @param speed {@link #REAL_TIME}, a multiple of it or {@link #AS_FAST_AS_POSSIBLE}
+     * @return Summary of the replay
+     * @throws IOException
+     */
+    public Result replay(final File file, final double speed) throws IOException {
+        if (speed < 0) throw new IllegalArgumentException("speed < 0");
+
+        final CaptureReader reader = new CaptureReader(file);
+        try {
+            final long start = System.nanoTime();
+            long count = 0;
+            long bytes = 0;
+            while (!mCancelled && reader.next()) {
+                if (speed > 0) {
+                    final long due = start + (long) (reader.getTimestamp() / speed);
+                    long wait;
+                    while ((wait = due - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+
+                final byte[] value = reader.getValue();
+                mDataPath.onCharacteristicValue(reader.getAddress(), reader.getCharacteristic(), value);
+                count++;
+                bytes += value.length;
+            }
+            return new Result(count, bytes, System.nanoTime() - start);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Stops a replay running on another thread after the current value. A replay that has not
+     * started yet returns at once, and so does every later one; use a new engine to replay again.
+     */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    /**
+     * Summary of a replay.
+     */
+    public static class Result {
+        private final long mCount;
+        private final long mBytes;
+        private final long mElapsedNanos;
+
+        Result(long count, long bytes, long elapsedNanos) {
+            mCount = count;
+            mBytes = bytes;
+            mElapsedNanos = elapsedNanos;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getBytes() {
+            return mBytes;
+        }
+
+        public long getElapsedNanos() {
+            return mElapsedNanos;
+        }
+
+        /**
+         * @return Values replayed per second.
+         */
+        public double getThroughput() {
+            return mElapsedNanos == 0 ? 0 : mCount * 1e9 / mElapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{count=" + mCount + ", bytes=" + mBytes + ", elapsed=" + mElapsedNanos / 1_000_000L
+                    + "ms, throughput=" + Math.round(getThroughput()) + "/s}";
+        }
+    }
+}
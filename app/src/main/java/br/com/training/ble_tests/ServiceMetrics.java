@@ -0,0 +1,325 @@
+package br.com.training.ble_tests;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and latency histograms of the notification path of {@link BluetoothLeService}, per
+ * device and per characteristic.
+ * <p>
+ * Each (device, characteristic) pair is a {@link Stream} with a small integer id. Looking a
+ * stream up and recording into it is lock-free and does not allocate once the stream exists,
+ * so it is safe to do on the GATT thread for every notification.
+ */
+public class ServiceMetrics {
+    public static final int STAGE_CALLBACK_TO_PARSE = 0;
+    public static final int STAGE_PARSE_TO_DISPATCH = 1;
+    public static final int STAGE_DISPATCH_TO_UI = 2;
+    public static final int STAGES = 3;
+
+    public static final int COUNTER_RECEIVED = 0;
+    public static final int COUNTER_MALFORMED = 1;
+    public static final int COUNTER_DISPATCHED = 2;
+    public static final int COUNTER_DISPLAYED = 3;
+    public static final int COUNTERS = 4;
+
+    private static final String[] STAGE_NAMES = {"callback->parse", "parse->dispatch", "dispatch->ui"};
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final ConcurrentHashMap<String, Stream[]> mStreamsByDevice = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> mDeviceSlots = new ConcurrentHashMap<>();
+    private volatile Stream[] mStreams = new Stream[0];
+
+    /**
+     * Returns the stream of a characteristic of a device, creating it the first time.
+     *
+     * @param address        Device address
+     * @param characteristic Characteristic UUID
+     * @return Stream
+     */
+    public Stream stream(final String address, final UUID characteristic) {
+        final Stream[] streams = mStreamsByDevice.get(address);
+        if (streams != null) {
+            for (Stream stream : streams) {
+                if (stream.mCharacteristic.equals(characteristic)) return stream;
+            }
+        }
+        return createStream(address, characteristic);
+    }
+
+    /**
+     * @param id Id of a stream, see {@link Stream#getId()}
+     * @return The stream or null if the id is unknown.
+     */
+    public Stream getStream(final int id) {
+        final Stream[] streams = mStreams;
+        return id >= 0 && id < streams.length ? streams[id] : null;
+    }
+
+    /**
+     * Returns the small id of a device, assigning the next free one the first time.
+     *
+     * @param address Device address
+     * @return int
+     */
+    public int deviceSlot(final String address) {
+        final Integer slot = mDeviceSlots.get(address);
+        return slot != null ? slot : assignDeviceSlot(address);
+    }
+
+    private synchronized int assignDeviceSlot(final String address) {
+        Integer slot = mDeviceSlots.get(address);
+        if (slot == null) {
+            slot = mDeviceSlots.size();
+            mDeviceSlots.put(address, slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Records the time between dispatching a measurement and showing it on screen.
+     *
+     * @param streamId Id of the stream the measurement belongs to
+     * @param nanos    Latency in nanoseconds
+     */
+    public void recordDisplayed(final int streamId, final long nanos) {
+        final Stream stream = getStream(streamId);
+        if (stream == null) return;
+
+        stream.increment(COUNTER_DISPLAYED);
+        stream.record(STAGE_DISPATCH_TO_UI, nanos);
+    }
+
+    private synchronized Stream createStream(final String address, final UUID characteristic) {
+        final Stream[] streams = mStreamsByDevice.get(address);
+        if (streams != null) {
+            for (Stream stream : streams) {
+                if (stream.mCharacteristic.equals(characteristic)) return stream;
+            }
+        }
+
+        final Stream stream = new Stream(mStreams.length, deviceSlot(address), address, characteristic);
+
+        final Stream[] all = new Stream[mStreams.length + 1];
+        System.arraycopy(mStreams, 0, all, 0, mStreams.length);
+        all[stream.mId] = stream;
+        mStreams = all;
+
+        final int length = streams == null ? 0 : streams.length;
+        final Stream[] forDevice = new Stream[length + 1];
+        if (streams != null) System.arraycopy(streams, 0, forDevice, 0, length);
+        forDevice[length] = stream;
+        mStreamsByDevice.put(address, forDevice);
+
+        return stream;
+    }
+
+    /**
+     * Copies every counter and histogram.
+     *
+     * @return Snapshot
+     */
+    public Snapshot snapshot() {
+        final Stream[] streams = mStreams;
+        final List<StreamSnapshot> snapshots = new ArrayList<>(streams.length);
+        for (Stream stream : streams) {
+            snapshots.add(stream.snapshot());
+        }
+        return new Snapshot(System.currentTimeMillis(), snapshots);
+    }
+
+    /**
+     * Counters and histograms of one characteristic of one device.
+     */
+    public static final class Stream {
+        private final int mId;
+        private final int mDeviceSlot;
+        private final String mAddress;
+        private final UUID mCharacteristic;
+        private final AtomicLongArray mCounters = new AtomicLongArray(COUNTERS);
+        private final LatencyHistogram[] mStages = new LatencyHistogram[STAGES];
+
+        Stream(int id, int deviceSlot, String address, UUID characteristic) {
+            mId = id;
+            mDeviceSlot = deviceSlot;
+            mAddress = address;
+            mCharacteristic = characteristic;
+            for (int i = 0; i < STAGES; i++) {
+                mStages[i] = new LatencyHistogram();
+            }
+        }
+
+        /**
+         * Small id, unique within the {@link ServiceMetrics}, that can travel in an Intent.
+         *
+         * @return int
+         */
+        public int getId() {
+            return mId;
+        }
+
+        /**
+         * Small id shared by every stream of the same device.
+         *
+         * @return int
+         */
+        public int getDeviceSlot() {
+            return mDeviceSlot;
+        }
+
+        public String getAddress() {
+            return mAddress;
+        }
+
+        public UUID getCharacteristic() {
+            return mCharacteristic;
+        }
+
+        public void increment(final int counter) {
+            mCounters.incrementAndGet(counter);
+        }
+
+        public void record(final int stage, final long nanos) {
+            mStages[stage].record(nanos);
+        }
+
+        StreamSnapshot snapshot() {
+            final long[] counters = new long[COUNTERS];
+            for (int i = 0; i < COUNTERS; i++) {
+                counters[i] = mCounters.get(i);
+            }
+            final LatencyHistogram.Snapshot[] stages = new LatencyHistogram.Snapshot[STAGES];
+            for (int i = 0; i < STAGES; i++) {
+                stages[i] = mStages[i].snapshot();
+            }
+            return new StreamSnapshot(mAddress, mCharacteristic, counters, stages);
+        }
+    }
+
+    /**
+     * Immutable copy of a {@link Stream}.
+     */
+    public static final class StreamSnapshot {
+        private final String mAddress;
+        private final UUID mCharacteristic;
+        private final long[] mCounters;
+        private final LatencyHistogram.Snapshot[] mStages;
+
+        StreamSnapshot(String address, UUID characteristic, long[] counters, LatencyHistogram.Snapshot[] stages) {
+            mAddress = address;
+            mCharacteristic = characteristic;
+            mCounters = counters;
+            mStages = stages;
+        }
+
+        public String getAddress() {
+            return mAddress;
+        }
+
+        public UUID getCharacteristic() {
+            return mCharacteristic;
+        }
+
+        public long getCounter(final int counter) {
+            return mCounters[counter];
+        }
+
+        public LatencyHistogram.Snapshot getStage(final int stage) {
+            return mStages[stage];
+        }
+    }
+
+    /**
+     * Immutable copy of every stream of a {@link ServiceMetrics}.
+     */
+    public static final class Snapshot {
+        private final long mTakenAt;
+        private final List<StreamSnapshot> mStreams;
+
+        Snapshot(long takenAt, List<StreamSnapshot> streams) {
+            mTakenAt = takenAt;
+            mStreams = Collections.unmodifiableList(streams);
+        }
+
+        /**
+         * @return Wall clock time, in milliseconds since epoch, of the snapshot.
+         */
+        public long getTakenAt() {
+            return mTakenAt;
+        }
+
+        public List<StreamSnapshot> getStreams() {
+            return mStreams;
+        }
+
+        /**
+         * Writes the snapshot in a compact binary form: a version, the time stamp, then for each
+         * stream its address, characteristic, counters, and for each stage the sum, max and the
+         * non-empty buckets as (index, count) pairs.
+         *
+         * @param out Destination, not closed
+         * @throws IOException
+         */
+        public void writeTo(final OutputStream out) throws IOException {
+            final DataOutputStream data = new DataOutputStream(out);
+            data.writeByte(SNAPSHOT_VERSION);
+            data.writeLong(mTakenAt);
+            data.writeShort(mStreams.size());
+            for (StreamSnapshot stream : mStreams) {
+                data.writeUTF(stream.mAddress);
+                data.writeLong(stream.mCharacteristic.getMostSignificantBits());
+                data.writeLong(stream.mCharacteristic.getLeastSignificantBits());
+                for (long counter : stream.mCounters) {
+                    data.writeLong(counter);
+                }
+                for (LatencyHistogram.Snapshot stage : stream.mStages) {
+                    data.writeLong(stage.getSum());
+                    data.writeLong(stage.getMax());
+
+                    int buckets = 0;
+                    for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+                        if (stage.getBucketCount(i) != 0) buckets++;
+                    }
+                    data.writeShort(buckets);
+                    for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+                        final long count = stage.getBucketCount(i);
+                        if (count == 0) continue;
+                        data.writeShort(i);
+                        data.writeLong(count);
+                    }
+                }
+            }
+            data.flush();
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder();
+            for (StreamSnapshot stream : mStreams) {
+                sb.append(stream.mAddress).append(' ').append(stream.mCharacteristic)
+                        .append(" received=").append(stream.mCounters[COUNTER_RECEIVED])
+                        .append(" malformed=").append(stream.mCounters[COUNTER_MALFORMED])
+                        .append(" dispatched=").append(stream.mCounters[COUNTER_DISPATCHED])
+                        .append(" displayed=").append(stream.mCounters[COUNTER_DISPLAYED])
+                        .append('\n');
+                for (int i = 0; i < STAGES; i++) {
+                    final LatencyHistogram.Snapshot stage = stream.mStages[i];
+                    sb.append(String.format(Locale.US, "  %-16s n=%d p50=%dus p99=%dus max=%dus%n",
+                            STAGE_NAMES[i], stage.getCount(),
+                            stage.getValueAtQuantile(0.5) / 1000,
+                            stage.getValueAtQuantile(0.99) / 1000,
+                            stage.getMax() / 1000));
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
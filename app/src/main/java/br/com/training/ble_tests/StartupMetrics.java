@@ -0,0 +1,126 @@
+package br.com.training.ble_tests;
+
+import java.util.Locale;
+
+/**
+ * Time from the start of {@link MainActivity} to the GATT connection and to the first
+ * temperature reading, split by kind of start:
+ * <ul>
+ * <li>{@link #START_COLD}: the first activity created in the process,</li>
+ * <li>{@link #START_WARM}: the activity created again in a live process, e.g. after the user
+ * backed out of it or on a configuration change,</li>
+ * <li>{@link #START_HOT}: the stopped activity brought back without being created again.</li>
+ * </ul>
+ * A start whose link is already up, as a hot one's usually is, is reported connected right after
+ * {@link #begin(int, long)}. Only one start is measured at a time; a new start replaces the one
+ * in progress.
+ * {@link #onReading(long)} is called for every reading and returns after one volatile read once
+ * the first reading of the start has been recorded.
+ */
+public class StartupMetrics {
+    public static final int START_COLD = 0;
+    public static final int START_WARM = 1;
+    public static final int START_HOT = 2;
+    public static final int STARTS = 3;
+
+    static final String[] START_NAMES = {"cold", "warm", "hot"};
+
+    private final LatencyHistogram[] mToConnect = new LatencyHistogram[STARTS];
+    private final LatencyHistogram[] mToFirstReading = new LatencyHistogram[STARTS];
+    private final EventTracer mTracer;
+
+    private int mStart = -1;
+    private long mStartedAt;
+    private boolean mWaitingForConnection;
+    private volatile boolean mWaitingForReading;
+
+    /**
+     * @param tracer Receives a {@link EventTracer#EVENT_STARTUP_CONNECTED} and a
+     *               {@link EventTracer#EVENT_STARTUP_FIRST_READING} event per start, may be null
+     */
+    public StartupMetrics(EventTracer tracer) {
+        mTracer = tracer;
+        for (int i = 0; i < STARTS; i++) {
+            mToConnect[i] = new LatencyHistogram();
+            mToFirstReading[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Starts measuring.
+     *
+     * @param start     One of the START_* constants
+     * @param startedAt {@link System#nanoTime()} when the activity was created or restarted
+     */
+    public synchronized void begin(final int start, final long startedAt) {
+        mStart = start;
+        mStartedAt = startedAt;
+        mWaitingForConnection = true;
+        mWaitingForReading = true;
+    }
+
+    /**
+     * @param now {@link System#nanoTime()} when the GATT link came up
+     */
+    public synchronized void onConnected(final long now) {
+        if (!mWaitingForConnection) return;
+
+        mWaitingForConnection = false;
+        final long elapsed = now - mStartedAt;
+        mToConnect[mStart].record(elapsed);
+        if (mTracer != null) {
+            mTracer.trace(EventTracer.LEVEL_INFO, EventTracer.EVENT_STARTUP_CONNECTED, 0, mStart, elapsed);
+        }
+    }
+
+    /**
+     * @param now {@link System#nanoTime()} when a temperature reading was decoded
+     * @return true if it was the first reading of the start
+     */
+    public boolean onReading(final long now) {
+        if (!mWaitingForReading) return false;
+
+        synchronized (this) {
+            if (!mWaitingForReading) return false;
+
+            mWaitingForReading = false;
+            final long elapsed = now - mStartedAt;
+            mToFirstReading[mStart].record(elapsed);
+            if (mTracer != null) {
+                mTracer.trace(EventTracer.LEVEL_INFO, EventTracer.EVENT_STARTUP_FIRST_READING, 0, mStart, elapsed);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @param start One of the START_* constants
+     * @return Times from the activity start to the GATT connection.
+     */
+    public LatencyHistogram.Snapshot getTimeToConnect(final int start) {
+        return mToConnect[start].snapshot();
+    }
+
+    /**
+     * @param start One of the START_* constants
+     * @return Times from the activity start to the first reading.
+     */
+    public LatencyHistogram.Snapshot getTimeToFirstReading(final int start) {
+        return mToFirstReading[start].snapshot();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < STARTS; i++) {
+            final LatencyHistogram.Snapshot connect = getTimeToConnect(i);
+            final LatencyHistogram.Snapshot reading = getTimeToFirstReading(i);
+            builder.append(String.format(Locale.US,
+                    "%-4s n=%d connect p50=%.1fms max=%.1fms, first reading n=%d p50=%.1fms max=%.1fms\n",
+                    START_NAMES[i],
+                    connect.getCount(), connect.getValueAtQuantile(0.5) / 1e6, connect.getMax() / 1e6,
+                    reading.getCount(), reading.getValueAtQuantile(0.5) / 1e6, reading.getMax() / 1e6));
+        }
+        return builder.toString();
+    }
+}
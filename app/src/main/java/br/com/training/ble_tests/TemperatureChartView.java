@@ -0,0 +1,141 @@
+package br.com.training.ble_tests;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+/**
+ * Line chart of the last readings of one device.
+ * <p>
+ * Each redraw asks the {@link TimeSeriesRing} for at most two samples per pixel column, so the
+ * cost of a frame depends on the width of the view and not on how much data is buffered.
+ * Buffers are allocated when the size changes, never in {@link #onDraw(Canvas)}.
+ */
+public class TemperatureChartView extends View {
+    /** Time shown by default, 24 h. */
+    public static final long DEFAULT_WINDOW = 24 * 60 * 60 * 1000L;
+
+    /** Smallest temperature range shown, so a steady reading is not drawn as noise. */
+    private static final float MIN_RANGE = 1f;
+
+    private final Paint mLinePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Path mPath = new Path();
+    private final StringBuilder mLabel = new StringBuilder(16);
+
+    private TimeSeriesRing mSeries;
+    private long mWindow = DEFAULT_WINDOW;
+    private long[] mTimes = new long[0];
+    private float[] mValues = new float[0];
+
+    public TemperatureChartView(Context context) {
+        this(context, null);
+    }
+
+    public TemperatureChartView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+
+        final float density = getResources().getDisplayMetrics().density;
+        mLinePaint.setStyle(Paint.Style.STROKE);
+        mLinePaint.setStrokeWidth(2 * density);
+        mLinePaint.setColor(ContextCompat.getColor(context, R.color.colorPrimary));
+        mTextPaint.setColor(Color.DKGRAY);
+        mTextPaint.setTextSize(12 * density);
+    }
+
+    /**
+     * Sets the readings to draw.
+     *
+     * @param series Ring of one device, or null to clear the chart
+     */
+    public void setSeries(@Nullable TimeSeriesRing series) {
+        mSeries = series;
+        invalidate();
+    }
+
+    /**
+     * Sets how far back in time the chart goes.
+     *
+     * @param window Milliseconds
+     */
+    public void setWindow(long window) {
+        mWindow = window;
+        invalidate();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mTimes = new long[2 * w];
+        mValues = new float[2 * w];
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        final TimeSeriesRing series = mSeries;
+        final int width = getWidth() - getPaddingLeft() - getPaddingRight();
+        final int height = getHeight() - getPaddingTop() - getPaddingBottom();
+        if (series == null || series.size() == 0 || width <= 0 || height <= 0) return;
+
+        final long to = series.getLastTime() + 1;
+        final long from = Math.max(to - mWindow, series.getFirstTime());
+        final int count = series.downsample(from, to, width, mTimes, mValues);
+        if (count == 0) return;
+
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            min = Math.min(min, mValues[i]);
+            max = Math.max(max, mValues[i]);
+        }
+        if (max - min < MIN_RANGE) {
+            final float middle = (min + max) / 2;
+            min = middle - MIN_RANGE / 2;
+            max = middle + MIN_RANGE / 2;
+        }
+
+        final float left = getPaddingLeft();
+        final float top = getPaddingTop() + mTextPaint.getTextSize();
+        final float plotHeight = height - 2 * mTextPaint.getTextSize();
+        final float xScale = to - from > 1 ? (width - 1) / (float) (to - 1 - from) : 0f;
+        final float yScale = plotHeight / (max - min);
+
+        mPath.rewind();
+        for (int i = 0; i < count; i++) {
+            final float x = left + (mTimes[i] - from) * xScale;
+            final float y = top + (max - mValues[i]) * yScale;
+            if (i == 0) {
+                mPath.moveTo(x, y);
+            } else {
+                mPath.lineTo(x, y);
+            }
+        }
+        if (count == 1) mPath.lineTo(left + width, top + (max - mValues[0]) * yScale);
+        canvas.drawPath(mPath, mLinePaint);
+
+        drawLabel(canvas, max, left, top - mTextPaint.descent());
+        drawLabel(canvas, min, left, top + plotHeight - mTextPaint.ascent());
+    }
+
+    /**
+     * Draws a temperature with one decimal, without allocating a String.
+     */
+    private void drawLabel(Canvas canvas, float celsius, float x, float y) {
+        mLabel.setLength(0);
+        int tenths = Math.round(celsius * 10);
+        if (tenths < 0) {
+            mLabel.append('-');
+            tenths = -tenths;
+        }
+        mLabel.append(tenths / 10).append('.').append(tenths % 10).append(" °C");
+        canvas.drawText(mLabel, 0, mLabel.length(), x, y, mTextPaint);
+    }
+}
@@ -0,0 +1,183 @@
+package br.com.training.ble_tests;
+
+/**
+ * Decoded Health Thermometer temperature measurement.
+ * <p>
+ * Instances are mutable so that hot paths can decode into a reused holder instead of
+ * allocating a new object for every indication.
+ */
+public class TemperatureMeasurement {
+    public static final int TYPE_NOT_PRESENT = -1;
+
+    private float temperature;
+    private int mantissa;
+    private int exponent;
+    private boolean fahrenheit;
+
+    private boolean timestampPresent;
+    private int year;
+    private int month;
+    private int day;
+    private int hours;
+    private int minutes;
+    private int seconds;
+
+    private int type = TYPE_NOT_PRESENT;
+    private long receivedAt;
+
+    /**
+     * Temperature value, already scaled by the IEEE-11073 exponent.
+     *
+     * @return float
+     */
+    public float getTemperature() {
+        return temperature;
+    }
+
+    /**
+     * Raw 24-bit mantissa of the IEEE-11073 FLOAT, useful to print the value without
+     * binary floating point noise.
+     *
+     * @return int
+     */
+    public int getMantissa() {
+        return mantissa;
+    }
+
+    /**
+     * Raw 8-bit exponent (power of ten) of the IEEE-11073 FLOAT.
+     *
+     * @return int
+     */
+    public int getExponent() {
+        return exponent;
+    }
+
+    /**
+     * Whether the device sent no actual temperature but an IEEE-11073 NaN, NRes or infinity, in
+     * which case {@link #getTemperature()} is meaningless.
+     *
+     * @return boolean
+     */
+    public boolean isSpecial() {
+        return GattHTDecoder.isSpecial(mantissa);
+    }
+
+    public boolean isFahrenheit() {
+        return fahrenheit;
+    }
+
+    public String getUnit() {
+        return fahrenheit ? "°F" : "°C";
+    }
+
+    /**
+     * Whether the device sent its own time stamp. When false the date/time getters return 0.
+     *
+     * @return boolean
+     */
+    public boolean isTimestampPresent() {
+        return timestampPresent;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * Month of the device time stamp, 1 (January) to 12 (December).
+     *
+     * @return int
+     */
+    public int getMonth() {
+        return month;
+    }
+
+    public int getDay() {
+        return day;
+    }
+
+    public int getHours() {
+        return hours;
+    }
+
+    public int getMinutes() {
+        return minutes;
+    }
+
+    public int getSeconds() {
+        return seconds;
+    }
+
+    /**
+     * Temperature type (body location) or {@link #TYPE_NOT_PRESENT}.
+     *
+     * @return int
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * Wall clock time, in milliseconds since epoch, at which the measurement was received.
+     *
+     * @return long
+     */
+    public long getReceivedAt() {
+        return receivedAt;
+    }
+
+    void setTemperature(final int mantissa, final int exponent, final float temperature) {
+        this.mantissa = mantissa;
+        this.exponent = exponent;
+        this.temperature = temperature;
+    }
+
+    void setFahrenheit(final boolean fahrenheit) {
+        this.fahrenheit = fahrenheit;
+    }
+
+    void setTimestamp(final int year, final int month, final int day,
+                      final int hours, final int minutes, final int seconds) {
+        this.timestampPresent = true;
+        this.year = year;
+        this.month = month;
+        this.day = day;
+        this.hours = hours;
+        this.minutes = minutes;
+        this.seconds = seconds;
+    }
+
+    void setType(final int type) {
+        this.type = type;
+    }
+
+    void setReceivedAt(final long receivedAt) {
+        this.receivedAt = receivedAt;
+    }
+
+    /**
+     * Clears every field so the holder can be reused for the next packet.
+     */
+    void reset() {
+        temperature = 0f;
+        mantissa = 0;
+        exponent = 0;
+        fahrenheit = false;
+        timestampPresent = false;
+        year = month = day = hours = minutes = seconds = 0;
+        type = TYPE_NOT_PRESENT;
+        receivedAt = 0L;
+    }
+
+    @Override
+    public String toString() {
+        return "TemperatureMeasurement{" +
+                "temperature=" + temperature +
+                ", unit=" + getUnit() +
+                ", timestampPresent=" + timestampPresent +
+                ", type=" + type +
+                ", receivedAt=" + receivedAt +
+                '}';
+    }
+}
@@ -0,0 +1,202 @@
+package br.com.training.ble_tests;
+
+/**
+ * Fixed-capacity ring of (time, value) samples kept in two parallel primitive arrays, so a day
+ * of readings costs 12 bytes per sample and no object per reading. When full, the oldest
+ * sample is overwritten.
+ * <p>
+ * Times must not go backwards: a sample older than the last one is stored with the last time,
+ * which keeps the ring sorted for the binary searches of {@link #indexOf(long)}. Methods are
+ * synchronized; the GATT thread appends while the UI thread downsamples.
+ */
+public class TimeSeriesRing {
+    private final long[] mTimes;
+    private final float[] mValues;
+    /** Physical index of the oldest sample. */
+    private int mHead;
+    private int mSize;
+
+    /**
+     * @param capacity Number of samples kept
+     */
+    public TimeSeriesRing(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        mTimes = new long[capacity];
+        mValues = new float[capacity];
+    }
+
+    /**
+     * Adds a sample, overwriting the oldest one when the ring is full.
+     *
+     * @param time  Time of the sample, e.g. milliseconds since epoch
+     * @param value Value
+     */
+    public synchronized void append(long time, final float value) {
+        if (mSize > 0) time = Math.max(time, mTimes[physical(mSize - 1)]);
+
+        final int index;
+        if (mSize < mTimes.length) {
+            index = physical(mSize++);
+        } else {
+            index = mHead;
+            mHead = mHead + 1 == mTimes.length ? 0 : mHead + 1;
+        }
+        mTimes[index] = time;
+        mValues[index] = value;
+    }
+
+    public int getCapacity() {
+        return mTimes.length;
+    }
+
+    public synchronized int size() {
+        return mSize;
+    }
+
+    public synchronized void clear() {
+        mHead = 0;
+        mSize = 0;
+    }
+
+    /**
+     * @return Time of the oldest sample, {@link Long#MIN_VALUE} if the ring is empty.
+     */
+    public synchronized long getFirstTime() {
+        return mSize == 0 ? Long.MIN_VALUE : mTimes[mHead];
+    }
+
+    /**
+     * @return Time of the newest sample, {@link Long#MIN_VALUE} if the ring is empty.
+     */
+    public synchronized long getLastTime() {
+        return mSize == 0 ? Long.MIN_VALUE : mTimes[physical(mSize - 1)];
+    }
+
+    public synchronized long getTime(final int index) {
+        checkIndex(index);
+        return mTimes[physical(index)];
+    }
+
+    public synchronized float getValue(final int index) {
+        checkIndex(index);
+        return mValues[physical(index)];
+    }
+
+    /**
+     * Binary search of the first sample at or after {@code time}, in O(log n).
+     *
+     * @param time Time
+     * @return Index, from 0 (oldest) to {@link #size()} if every sample is older
+     */
+    public synchronized int indexOf(final long time) {
+        int low = 0;
+        int high = mSize;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (mTimes[physical(middle)] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Copies the samples of [from, to).
+     *
+     * @return Number of samples copied, at most the length of the arrays
+     */
+    public synchronized int copy(final long from, final long to, final long[] times, final float[] values) {
+        final int start = indexOf(from);
+        final int count = Math.min(Math.min(times.length, values.length), indexOf(to) - start);
+        for (int i = 0; i < count; i++) {
+            final int index = physical(start + i);
+            times[i] = mTimes[index];
+            values[i] = mValues[index];
+        }
+        return Math.max(count, 0);
+    }
+
+    /**
+     * Reduces the samples of [from, to) to at most two per bucket, the lowest and the highest in
+     * the order they were received, so spikes survive however many samples share a pixel.
+     * Buckets split the time range evenly; pass the width of the chart in pixels. The cost is
+     * O(log n) to find the range plus one pass over the samples in it.
+     *
+     * @param from    Start of the range, inclusive
+     * @param to      End of the range, exclusive
+     * @param buckets Number of buckets, e.g. the chart width in pixels
+     * @param times   Receives the times, room for 2 * buckets samples
+     * @param values  Receives the values, room for 2 * buckets samples
+     * @return Number of samples written
+     */
+    public synchronized int downsample(final long from, final long to, final int buckets,
+                                       final long[] times, final float[] values) {
+        if (buckets <= 0 || to <= from) return 0;
+        if (times.length < 2 * buckets || values.length < 2 * buckets) {
+            throw new IllegalArgumentException("Output must hold 2 * buckets samples");
+        }
+
+        final int start = indexOf(from);
+        final int end = indexOf(to);
+        if (end - start <= 2 * buckets) {
+            return copy(from, to, times, values);
+        }
+
+        final double span = (double) (to - from);
+        int count = 0;
+        int bucket = -1;
+        int minIndex = -1;
+        int maxIndex = -1;
+        for (int i = start; i < end; i++) {
+            final int index = physical(i);
+            final int current = Math.min(buckets - 1, (int) ((mTimes[index] - from) * buckets / span));
+            if (current != bucket) {
+                count = flush(minIndex, maxIndex, times, values, count);
+                bucket = current;
+                minIndex = maxIndex = index;
+            } else if (mValues[index] < mValues[minIndex]) {
+                minIndex = index;
+            } else if (mValues[index] > mValues[maxIndex]) {
+                maxIndex = index;
+            }
+        }
+        return flush(minIndex, maxIndex, times, values, count);
+    }
+
+    /**
+     * Writes the extremes of a bucket in time order, once if they are the same sample.
+     */
+    private int flush(final int minIndex, final int maxIndex, final long[] times, final float[] values,
+                      int count) {
+        if (minIndex < 0) return count;
+
+        final boolean minFirst = logical(minIndex) <= logical(maxIndex);
+        final int first = minFirst ? minIndex : maxIndex;
+        final int second = minFirst ? maxIndex : minIndex;
+        times[count] = mTimes[first];
+        values[count++] = mValues[first];
+        if (second != first) {
+            times[count] = mTimes[second];
+            values[count++] = mValues[second];
+        }
+        return count;
+    }
+
+    private int physical(final int index) {
+        final int physical = mHead + index;
+        return physical >= mTimes.length ? physical - mTimes.length : physical;
+    }
+
+    private int logical(final int physical) {
+        final int logical = physical - mHead;
+        return logical < 0 ? logical + mTimes.length : logical;
+    }
+
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + mSize);
+        }
+    }
+}
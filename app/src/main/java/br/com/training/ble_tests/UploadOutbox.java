@@ -0,0 +1,352 @@
+package br.com.training.ble_tests;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Durable queue of measurement batches waiting for {@link BatchUploader}, kept as files in one
+ * directory:
+ * <pre>
+ * open-&lt;seq&gt;.ndjson       batch being filled, NDJSON lines written by {@link MeasurementExporter}
+ * batch-&lt;seq&gt;.ndjson      closed batch, waiting to be compressed
+ * batch-&lt;seq&gt;.ndjson.gz   batch ready to send
+ * </pre>
+ * Sequence numbers are zero padded so names sort in the order batches were closed. The next
+ * sequence number is saved in {@code outbox.properties} with a random id of the outbox, so
+ * {@link #getBatchId(File)} never repeats, even once the outbox was emptied or the app data
+ * cleared. After a crash the open batch is cut after its last complete line and queued, and
+ * half-written compressed files are redone.
+ * <p>
+ * Not thread-safe: {@link BatchUploader} only uses it from its upload thread.
+ */
+class UploadOutbox implements Closeable {
+    private static final String OPEN_PREFIX = "open-";
+    private static final String BATCH_PREFIX = "batch-";
+    private static final String RAW_SUFFIX = ".ndjson";
+    private static final String GZIP_SUFFIX = ".ndjson.gz";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final String STATE_FILE = "outbox.properties";
+    private static final String STATE_ID = "id";
+    private static final String STATE_SEQUENCE = "sequence";
+    private static final int COPY_BUFFER_SIZE = 16 * 1024;
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+    private final File mStateFile;
+    private String mId;
+    private long mNextSequence;
+
+    private File mOpenFile;
+    private MeasurementExporter mOpen;
+    private int mOpenCount;
+    private long mOpenSince;
+    private volatile long mDroppedBatches;
+
+    /**
+     * Opens the outbox, recovering what a previous process left in it.
+     *
+     * @param directory Directory of the outbox, created if needed
+     * @param maxBytes  Space the queued batches may take; the oldest are dropped beyond it
+     * @throws IOException
+     */
+    UploadOutbox(File directory, long maxBytes) throws IOException {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+
+        mStateFile = new File(directory, STATE_FILE);
+        loadState();
+        for (File file : list()) {
+            final String name = file.getName();
+            mNextSequence = Math.max(mNextSequence, sequenceOf(name) + 1);
+            if (name.endsWith(TEMPORARY_SUFFIX)) {
+                delete(file);
+            } else if (name.startsWith(OPEN_PREFIX)) {
+                recoverOpen(file);
+            }
+        }
+    }
+
+    /**
+     * Appends a measurement to the open batch, opening one if needed.
+     *
+     * @param address     Device address
+     * @param measurement Measurement
+     * @param now         {@link System#nanoTime()}, the age of a batch starts with its first record
+     * @throws IOException
+     */
+    void append(final String address, final TemperatureMeasurement measurement, final long now) throws IOException {
+        if (mOpen == null) {
+            final long sequence = mNextSequence++;
+            saveState();
+            mOpenFile = new File(mDirectory, name(OPEN_PREFIX, sequence, RAW_SUFFIX));
+            mOpen = new MeasurementExporter(new FileOutputStream(mOpenFile), MeasurementExporter.FORMAT_NDJSON, false);
+            mOpenCount = 0;
+            mOpenSince = now;
+        }
+        mOpen.write(address, measurement);
+        mOpenCount++;
+    }
+
+    /**
+     * @return Records in the open batch.
+     */
+    int getOpenCount() {
+        return mOpenCount;
+    }
+
+    /**
+     * @return Uncompressed bytes in the open batch.
+     */
+    long getOpenBytes() {
+        return mOpen == null ? 0 : mOpen.getByteCount();
+    }
+
+    /**
+     * @return {@link System#nanoTime()} of the first record of the open batch.
+     */
+    long getOpenSince() {
+        return mOpenSince;
+    }
+
+    /**
+     * Writes the buffered records of the open batch to its file.
+     *
+     * @throws IOException
+     */
+    void flush() throws IOException {
+        if (mOpen != null) mOpen.flush();
+    }
+
+    /**
+     * Closes the open batch and queues it for upload.
+     *
+     * @return false if there was nothing to close
+     * @throws IOException
+     */
+    boolean roll() throws IOException {
+        if (mOpen == null) return false;
+
+        final MeasurementExporter open = mOpen;
+        final File file = mOpenFile;
+        mOpen = null;
+        mOpenFile = null;
+        mOpenCount = 0;
+        open.close();
+        rename(file, new File(mDirectory, file.getName().replace(OPEN_PREFIX, BATCH_PREFIX)));
+        return true;
+    }
+
+    /**
+     * Returns the oldest batch ready to send, compressing closed batches first.
+     *
+     * @return The gzipped batch, or null if the outbox is empty
+     * @throws IOException
+     */
+    File nextBatch() throws IOException {
+        File[] files = list();
+        for (File file : files) {
+            if (file.getName().startsWith(BATCH_PREFIX) && file.getName().endsWith(RAW_SUFFIX)) {
+                compress(file);
+            }
+        }
+
+        files = trim(list());
+        for (File file : files) {
+            if (file.getName().endsWith(GZIP_SUFFIX)) return file;
+        }
+        return null;
+    }
+
+    /**
+     * Removes a batch once it was delivered or rejected.
+     *
+     * @param batch File returned by {@link #nextBatch()}
+     */
+    void remove(final File batch) {
+        delete(batch);
+    }
+
+    /**
+     * @return Batches dropped because the outbox was full. Safe to call from any thread.
+     */
+    long getDroppedBatches() {
+        return mDroppedBatches;
+    }
+
+    /**
+     * Id of a batch, sent with it so the server can drop retried duplicates: the outbox id and
+     * the sequence number of the batch.
+     *
+     * @param batch File returned by {@link #nextBatch()}
+     * @return Id, unique across restarts
+     */
+    String getBatchId(final File batch) {
+        return mId + "-" + sequenceOf(batch.getName());
+    }
+
+    private static long sequenceOf(final String name) {
+        final int start = name.indexOf('-') + 1;
+        final int end = name.indexOf('.', start);
+        try {
+            return Long.parseLong(name.substring(start, end < 0 ? name.length() : end));
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Closes the open batch file without queueing it; it is recovered on the next start.
+     */
+    @Override
+    public void close() throws IOException {
+        if (mOpen != null) {
+            mOpen.close();
+            mOpen = null;
+        }
+    }
+
+    private void compress(final File raw) throws IOException {
+        final String name = raw.getName();
+        final File temporary = new File(mDirectory, name + TEMPORARY_SUFFIX);
+        final InputStream in = new FileInputStream(raw);
+        try {
+            final OutputStream out = new GZIPOutputStream(new FileOutputStream(temporary), COPY_BUFFER_SIZE);
+            try {
+                final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+        rename(temporary, new File(mDirectory, name.replace(RAW_SUFFIX, GZIP_SUFFIX)));
+        delete(raw);
+    }
+
+    /**
+     * Drops the oldest batches while the queued ones take more than the allowed space.
+     *
+     * @return The files left
+     */
+    private File[] trim(final File[] files) {
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        int first = 0;
+        while (total > mMaxBytes && first < files.length) {
+            final File oldest = files[first++];
+            if (!oldest.getName().startsWith(BATCH_PREFIX)) continue;
+            total -= oldest.length();
+            delete(oldest);
+            mDroppedBatches++;
+        }
+        return Arrays.copyOfRange(files, first, files.length);
+    }
+
+    /**
+     * Cuts a batch left open by a crash after its last complete line and queues it.
+     */
+    private void recoverOpen(final File file) throws IOException {
+        final RandomAccessFile access = new RandomAccessFile(file, "rw");
+        try {
+            long length = access.length();
+            while (length > 0) {
+                access.seek(length - 1);
+                if (access.read() == '\n') break;
+                length--;
+            }
+            access.setLength(length);
+        } finally {
+            access.close();
+        }
+
+        if (file.length() == 0) {
+            delete(file);
+        } else {
+            rename(file, new File(mDirectory, file.getName().replace(OPEN_PREFIX, BATCH_PREFIX)));
+        }
+    }
+
+    /**
+     * Reads the outbox id and the next sequence number, creating them the first time.
+     */
+    private void loadState() throws IOException {
+        final Properties state = new Properties();
+        if (mStateFile.exists()) {
+            final InputStream in = new FileInputStream(mStateFile);
+            try {
+                state.load(in);
+            } finally {
+                in.close();
+            }
+        }
+        mId = state.getProperty(STATE_ID);
+        try {
+            mNextSequence = Long.parseLong(state.getProperty(STATE_SEQUENCE, "0"));
+        } catch (NumberFormatException e) {
+            mNextSequence = 0;
+        }
+        if (mId == null) {
+            // A new id also covers a state file lost with the batches it numbered.
+            mId = UUID.randomUUID().toString();
+            saveState();
+        }
+    }
+
+    private void saveState() throws IOException {
+        final Properties state = new Properties();
+        state.setProperty(STATE_ID, mId);
+        state.setProperty(STATE_SEQUENCE, Long.toString(mNextSequence));
+        final File temporary = new File(mDirectory, STATE_FILE + TEMPORARY_SUFFIX);
+        final FileOutputStream out = new FileOutputStream(temporary);
+        try {
+            state.store(out, null);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        rename(temporary, mStateFile);
+    }
+
+    /**
+     * @return The batch files, oldest first.
+     */
+    private File[] list() {
+        final File[] files = mDirectory.listFiles(
+                file -> file.getName().startsWith(OPEN_PREFIX) || file.getName().startsWith(BATCH_PREFIX));
+        if (files == null) return new File[0];
+        Arrays.sort(files, (a, b) -> Long.compare(sequenceOf(a.getName()), sequenceOf(b.getName())));
+        return files;
+    }
+
+    private static String name(final String prefix, final long sequence, final String suffix) {
+        return String.format(Locale.US, "%s%019d%s", prefix, sequence, suffix);
+    }
+
+    private static void rename(final File from, final File to) throws IOException {
+        if (!from.renameTo(to)) throw new IOException("Unable to rename " + from + " to " + to);
+    }
+
+    private static void delete(final File file) {
+        if (!file.delete() && file.exists()) file.deleteOnExit();
+    }
+}
@@ -0,0 +1,390 @@
+package br.com.training.ble_tests;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of {@link BatchUploader} and {@link UploadOutbox} against a local HTTP server that
+ * can be made slow or failing.
+ */
+public class BatchUploaderTest {
+    private static final String ADDRESS = "1C:87:74:01:73:10";
+    private static final long TIMEOUT = 10_000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private HttpServer mServer;
+    private final List<String> mLines = Collections.synchronizedList(new ArrayList<>());
+    private final Set<String> mBatchIds = Collections.synchronizedSet(new HashSet<>());
+    private final Set<Integer> mClientPorts = Collections.synchronizedSet(new HashSet<>());
+    private final AtomicInteger mRequests = new AtomicInteger();
+    private final AtomicInteger mFailuresLeft = new AtomicInteger();
+    private volatile int mFailureStatus = 503;
+    private volatile long mLatency;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        mServer.createContext("/readings", exchange -> {
+            mRequests.incrementAndGet();
+            mClientPorts.add(exchange.getRemoteAddress().getPort());
+            final byte[] body = readAll(exchange.getRequestBody());
+            sleep(mLatency);
+
+            if (mFailuresLeft.getAndDecrement() > 0) {
+                if (mFailureStatus / 100 == 3) {
+                    exchange.getResponseHeaders().set("Location", "http://127.0.0.1:1/elsewhere");
+                }
+                exchange.sendResponseHeaders(mFailureStatus, -1);
+            } else {
+                assertEquals("gzip", exchange.getRequestHeaders().getFirst("Content-Encoding"));
+                if (mBatchIds.add(exchange.getRequestHeaders().getFirst("X-Batch-Id"))) {
+                    final BufferedReader reader = new BufferedReader(new InputStreamReader(
+                            new GZIPInputStream(new ByteArrayInputStream(body)), StandardCharsets.UTF_8));
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        mLines.add(line);
+                    }
+                }
+                final byte[] response = "{\"ok\":true}".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, response.length);
+                exchange.getResponseBody().write(response);
+            }
+            exchange.close();
+        });
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void add_sendsCountBoundedBatches() throws Exception {
+        final BatchUploader uploader = new BatchUploader(mFolder.newFolder("outbox"),
+                config().setBatchSize(10, 10, 10));
+        for (int i = 0; i < 100; i++) {
+            uploader.add(ADDRESS, measurement(i));
+        }
+
+        awaitSent(uploader, 10);
+        assertEquals(100, mLines.size());
+        assertEquals(10, mRequests.get());
+        assertTrue(mLines.get(0), mLines.get(0).startsWith("{\"address\":\"" + ADDRESS + "\""));
+        // One connection is reused for every batch.
+        assertEquals(1, mClientPorts.size());
+        uploader.close();
+    }
+
+    @Test
+    public void failedBatch_isRetriedWithoutDuplicates() throws Exception {
+        mFailuresLeft.set(3);
+        final BatchUploader uploader = new BatchUploader(mFolder.newFolder("outbox"),
+                config().setBatchSize(5, 5, 5));
+        for (int i = 0; i < 20; i++) {
+            uploader.add(ADDRESS, measurement(i));
+        }
+
+        awaitSent(uploader, 4);
+        assertEquals(3, uploader.getFailures());
+        assertEquals(20, mLines.size());
+        uploader.close();
+    }
+
+    @Test
+    public void rejectedBatch_isDropped() throws Exception {
+        mFailuresLeft.set(1);
+        mFailureStatus = 400;
+        final BatchUploader uploader = new BatchUploader(mFolder.newFolder("outbox"),
+                config().setBatchSize(5, 5, 5));
+        for (int i = 0; i < 10; i++) {
+            uploader.add(ADDRESS, measurement(i));
+        }
+
+        awaitSent(uploader, 1);
+        assertEquals(5, mLines.size());
+        assertEquals(1, uploader.getRejectedBatches());
+        assertEquals(0, uploader.getFailures());
+        uploader.close();
+    }
+
+    @Test
+    public void redirectedBatch_isKeptAndRetried() throws Exception {
+        mFailuresLeft.set(2);
+        mFailureStatus = 301;
+        final BatchUploader uploader = new BatchUploader(mFolder.newFolder("outbox"),
+                config().setBatchSize(5, 5, 5));
+        for (int i = 0; i < 10; i++) {
+            uploader.add(ADDRESS, measurement(i));
+        }
+
+        awaitSent(uploader, 2);
+        assertEquals(10, mLines.size());
+        assertEquals(2, uploader.getRedirectedBatches());
+        assertEquals(0, uploader.getRejectedBatches());
+        uploader.close();
+    }
+
+    @Test
+    public void outbox_survivesRestart() throws Exception {
+        final File directory = mFolder.newFolder("outbox");
+        mFailuresLeft.set(Integer.MAX_VALUE);
+        final BatchUploader offline = new BatchUploader(directory,
+                config().setBatchSize(10, 10, 10).setBackoff(60_000, 60_000));
+        for (int i = 0; i < 25; i++) {
+            offline.add(ADDRESS, measurement(i));
+        }
+        offline.close();
+        assertTrue(offline.awaitClosed(TIMEOUT));
+        assertEquals(0, mLines.size());
+
+        // A crash in the middle of a record leaves a partial line in an open batch.
+        try (OutputStream out = new FileOutputStream(new File(directory, "open-0000000000000000099.ndjson"))) {
+            out.write("{\"address\":\"A\"}\n{\"addr".getBytes(StandardCharsets.UTF_8));
+        }
+
+        mFailuresLeft.set(0);
+        final BatchUploader online = new BatchUploader(directory, config());
+        awaitLines(26);
+        assertEquals(26, mLines.size());
+        assertEquals("{\"address\":\"A\"}", mLines.get(25));
+        online.close();
+    }
+
+    @Test
+    public void batchIds_doNotRepeatAfterRestart() throws Exception {
+        final File directory = mFolder.newFolder("outbox");
+        final Set<String> ids = Collections.synchronizedSet(new HashSet<String>());
+        mServer.createContext("/ids", exchange -> {
+            ids.add(exchange.getRequestHeaders().getFirst("X-Batch-Id"));
+            readAll(exchange.getRequestBody());
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        final BatchUploader.Config config = new BatchUploader.Config(
+                "http://127.0.0.1:" + mServer.getAddress().getPort() + "/ids")
+                .setBatchSize(5, 5, 5)
+                .setFlushInterval(20);
+
+        for (int run = 0; run < 3; run++) {
+            final BatchUploader uploader = new BatchUploader(directory, config);
+            for (int i = 0; i < 10; i++) {
+                uploader.add(ADDRESS, measurement(i));
+            }
+            awaitSent(uploader, 2);
+            uploader.close();
+            assertTrue(uploader.awaitClosed(TIMEOUT));
+        }
+
+        // Each run started with an empty outbox, yet every batch got a new id.
+        assertEquals(6, ids.size());
+    }
+
+    @Test
+    public void close_doesNotWaitForTheBatchInFlight() throws Exception {
+        mLatency = 500;
+        final File directory = mFolder.newFolder("outbox");
+        final BatchUploader uploader = new BatchUploader(directory, config().setBatchSize(5, 5, 5));
+        for (int i = 0; i < 7; i++) {
+            uploader.add(ADDRESS, measurement(i));
+        }
+        while (mRequests.get() == 0) {
+            Thread.sleep(10);
+        }
+
+        final long start = System.nanoTime();
+        uploader.close();
+        assertTrue(System.nanoTime() - start < 100_000_000L);
+
+        // The batch in flight completes and the 2 readings left are kept for the next run.
+        assertTrue(uploader.awaitClosed(TIMEOUT));
+        assertEquals(1, uploader.getSentBatches());
+        mLatency = 0;
+        final BatchUploader next = new BatchUploader(directory, config());
+        awaitLines(7);
+        next.close();
+    }
+
+    @Test
+    public void queue_isWrittenToDiskWhileABatchIsInFlight() throws Exception {
+        mLatency = 1000;
+        final File directory = mFolder.newFolder("outbox");
+        final BatchUploader uploader = new BatchUploader(directory, config().setBatchSize(1, 1, 1));
+        uploader.add(ADDRESS, measurement(0));
+        while (mRequests.get() == 0) {
+            Thread.sleep(10);
+        }
+        for (int i = 1; i <= 3; i++) {
+            uploader.add(ADDRESS, measurement(i));
+        }
+
+        // The batch in flight and the 3 readings added meanwhile, each in its own closed batch.
+        final long deadline = System.currentTimeMillis() + 500;
+        while (batchFiles(directory) < 4 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(4, batchFiles(directory));
+        assertEquals(1, mRequests.get());
+
+        mLatency = 0;
+        awaitSent(uploader, 4);
+        uploader.close();
+    }
+
+    @Test
+    public void add_dropsReadingsBeyondTheQueue() throws Exception {
+        final BatchUploader uploader = new BatchUploader(mFolder.newFolder("outbox"),
+                config().setQueueCapacity(4));
+        uploader.close();
+        assertTrue(uploader.awaitClosed(TIMEOUT));
+
+        // Nothing drains the queue once closed, so only 4 of these fit.
+        for (int i = 0; i < 10; i++) {
+            uploader.add(ADDRESS, measurement(i));
+        }
+
+        assertEquals(6, uploader.getDroppedReadings());
+    }
+
+    @Test
+    public void openBatch_isSentWhenOld() throws Exception {
+        final BatchUploader uploader = new BatchUploader(mFolder.newFolder("outbox"),
+                config().setMaxBatchAge(100));
+        uploader.add(ADDRESS, measurement(0));
+
+        awaitSent(uploader, 1);
+        assertEquals(1, mLines.size());
+        uploader.close();
+    }
+
+    @Test
+    public void batchSize_followsRoundTrip() throws Exception {
+        mLatency = 150;
+        final BatchUploader slow = new BatchUploader(mFolder.newFolder("slow"),
+                config().setBatchSize(2, 16, 64).setTargetRoundTrip(100));
+        sendFullBatches(slow, 3);
+        assertEquals(2, slow.getBatchSize());
+        slow.close();
+
+        mLatency = 0;
+        final BatchUploader fast = new BatchUploader(mFolder.newFolder("fast"),
+                config().setBatchSize(2, 16, 64).setTargetRoundTrip(1000));
+        sendFullBatches(fast, 3);
+        assertEquals(64, fast.getBatchSize());
+        fast.close();
+    }
+
+    @Test
+    public void outbox_dropsOldestWhenFull() throws Exception {
+        final File directory = mFolder.newFolder("outbox");
+        final UploadOutbox outbox = new UploadOutbox(directory, 1);
+        for (int i = 0; i < 3; i++) {
+            outbox.append(ADDRESS, measurement(i), 0);
+            outbox.roll();
+        }
+
+        final File batch = outbox.nextBatch();
+        assertEquals(null, batch);
+        assertEquals(3, outbox.getDroppedBatches());
+        outbox.close();
+    }
+
+    private BatchUploader.Config config() throws IOException {
+        return new BatchUploader.Config("http://127.0.0.1:" + mServer.getAddress().getPort() + "/readings")
+                .setBackoff(20, 100)
+                .setFlushInterval(20)
+                .setTimeouts(2000, 2000);
+    }
+
+    private static int batchFiles(final File directory) {
+        final String[] names = directory.list((dir, name) -> name.startsWith("batch-"));
+        return names == null ? 0 : names.length;
+    }
+
+    private void awaitLines(final int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (mLines.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, mLines.size());
+    }
+
+    /**
+     * Fills batches of the current size one after the other, so each sees the previous round trip.
+     */
+    private static void sendFullBatches(final BatchUploader uploader, final int batches) throws InterruptedException {
+        for (int batch = 0; batch < batches; batch++) {
+            final long sent = uploader.getSentBatches();
+            final int size = uploader.getBatchSize();
+            for (int i = 0; i < size; i++) {
+                uploader.add(ADDRESS, measurement(i));
+            }
+            awaitSent(uploader, sent + 1);
+        }
+    }
+
+    private static void awaitSent(final BatchUploader uploader, final long batches) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (uploader.getSentBatches() < batches && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(batches, uploader.getSentBatches());
+    }
+
+    private static TemperatureMeasurement measurement(final int i) {
+        final TemperatureMeasurement measurement = new TemperatureMeasurement();
+        GattHTDecoder.decode(GattHTDecoder.encode(360 + i, -1, false, false, false,
+                0, 0, 0, 0, 0, 0), measurement);
+        measurement.setReceivedAt(1_000_000L + i);
+        return measurement;
+    }
+
+    private static byte[] readAll(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static void sleep(final long millis) {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package br.com.training.ble_tests;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of {@link CaptureWriter}, {@link CaptureReader} and {@link ReplayEngine}.
+ */
+public class CaptureReplayTest {
+    private static final UUID OTHER = UUID.fromString("00002a19-0000-1000-8000-00805f9b34fb");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void capture_roundTrips() throws IOException {
+        final File file = folder.newFile("capture.bin");
+        final byte[] big = new byte[100 * 1024];
+        big[big.length - 1] = 7;
+
+        final CaptureWriter writer = new CaptureWriter(file);
+        writer.append("1C:87:74:01:73:10", GattDataPath.TEMPERATURE_MEASUREMENT, packet(366), 1_000L);
+        writer.append("1C:87:74:01:73:11", OTHER, new byte[]{42}, 3_000L);
+        writer.append("1C:87:74:01:73:10", GattDataPath.TEMPERATURE_MEASUREMENT, big, 10_000L);
+        writer.close();
+
+        final CaptureReader reader = new CaptureReader(file);
+        assertTrue(reader.next());
+        assertEquals("1C:87:74:01:73:10", reader.getAddress());
+        assertEquals(GattDataPath.TEMPERATURE_MEASUREMENT, reader.getCharacteristic());
+        assertArrayEquals(packet(366), reader.getValue());
+        assertEquals(0L, reader.getTimestamp());
+
+        assertTrue(reader.next());
+        assertEquals("1C:87:74:01:73:11", reader.getAddress());
+        assertEquals(OTHER, reader.getCharacteristic());
+        assertEquals(2_000L, reader.getTimestamp());
+
+        assertTrue(reader.next());
+        assertArrayEquals(big, reader.getValue());
+        assertEquals(9_000L, reader.getTimestamp());
+
+        assertFalse(reader.next());
+        reader.close();
+    }
+
+    @Test
+    public void replay_feedsDataPathAtRequestedSpeed() throws IOException {
+        final File file = folder.newFile("replay.bin");
+        final CaptureWriter writer = new CaptureWriter(file);
+        for (int i = 0; i < 20; i++) {
+            writer.append("1C:87:74:01:73:10", GattDataPath.TEMPERATURE_MEASUREMENT, packet(360 + i), i * 10_000_000L);
+        }
+        writer.close();
+
+        final List<Float> temperatures = new ArrayList<>();
+        final GattDataPath dataPath = new GattDataPath(new GattDataPath.Listener() {
+            @Override
+            public void onTemperature(ServiceMetrics.Stream stream, TemperatureMeasurement measurement) {
+                temperatures.add(measurement.getTemperature());
+            }
+
+            @Override
+            public void onOtherData(ServiceMetrics.Stream stream, byte[] value) {
+            }
+
+            @Override
+            public void onMalformed(ServiceMetrics.Stream stream, byte[] value) {
+            }
+        });
+        final ReplayEngine engine = new ReplayEngine(dataPath);
+
+        // 190 ms of traffic at 10x speed takes about 19 ms.
+        final ReplayEngine.Result paced = engine.replay(file, 10);
+        assertEquals(20, paced.getCount());
+        assertTrue(paced.getElapsedNanos() >= 19_000_000L);
+        assertEquals(36.0f, temperatures.get(0), 1e-4f);
+        assertEquals(37.9f, temperatures.get(19), 1e-4f);
+
+        final ReplayEngine.Result fast = engine.replay(file, ReplayEngine.AS_FAST_AS_POSSIBLE);
+        assertEquals(20, fast.getCount());
+        assertEquals(40, temperatures.size());
+    }
+
+    @Test
+    public void replay_cancelledBeforeStartDeliversNothing() throws IOException {
+        final File file = folder.newFile("cancelled.bin");
+        final CaptureWriter writer = new CaptureWriter(file);
+        writer.append("1C:87:74:01:73:10", GattDataPath.TEMPERATURE_MEASUREMENT, packet(366), 0);
+        writer.close();
+
+        final GattDataPath dataPath = new GattDataPath(null);
+        final ReplayEngine engine = new ReplayEngine(dataPath);
+        engine.cancel();
+
+        assertEquals(0, engine.replay(file, ReplayEngine.AS_FAST_AS_POSSIBLE).getCount());
+        assertEquals(0, dataPath.getReceivedCount());
+    }
+
+    @Test
+    public void captureFailure_keepsCaptureStartedMeanwhile() throws IOException {
+        final GattDataPath dataPath = new GattDataPath(new GattDataPath.Listener() {
+            @Override
+            public void onTemperature(ServiceMetrics.Stream stream, TemperatureMeasurement measurement) {
+            }
+
+            @Override
+            public void onOtherData(ServiceMetrics.Stream stream, byte[] value) {
+            }
+
+            @Override
+            public void onMalformed(ServiceMetrics.Stream stream, byte[] value) {
+            }
+        });
+        final CaptureWriter next = new CaptureWriter(folder.newFile("next.bin"));
+        final CaptureWriter failing = new CaptureWriter(folder.newFile("failing.bin")) {
+            @Override
+            public synchronized void append(String address, UUID characteristic, byte[] value, long timestamp)
+                    throws IOException {
+                // The capture is restarted while this write fails.
+                dataPath.setCapture(next);
+                throw new IOException("disk full");
+            }
+        };
+        dataPath.setCapture(failing);
+
+        dataPath.onCharacteristicValue("1C:87:74:01:73:10", OTHER, new byte[]{42});
+        assertTrue(dataPath.getCapture() == next);
+
+        dataPath.onCharacteristicValue("1C:87:74:01:73:10", OTHER, new byte[]{43});
+        assertEquals(1, next.getCount());
+        failing.close();
+        next.close();
+    }
+
+    private static byte[] packet(int tenths) {
+        return GattHTDecoder.encode(tenths, -1, false, false, false, 0, 0, 0, 0, 0, 0);
+    }
+}
@@ -0,0 +1,153 @@
+package br.com.training.ble_tests;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of {@link DateUtils.Formatter}, checked against {@link SimpleDateFormat}.
+ */
+public class DateUtilsTest {
+    private static final String[] PATTERNS = {
+            DateUtils.DATE_FORMAT_DATE_TIME,
+            "yyyy-MM-dd HH:mm:ss",
+            "yyyy-MM-dd'T'HH:mm:ss.SSSXXX",
+            "yy/M/d H:m:s.S X",
+            "dd.MM.yyyy 'at' HH''mm''ss XX",
+            "HH:mm:ss.SSSS",
+    };
+
+    /** Zones with DST at midnight, half-hour DST, negative and fractional offsets. */
+    private static final String[] ZONES = {
+            "UTC", "America/Sao_Paulo", "Europe/Berlin", "Australia/Lord_Howe", "Asia/Kolkata",
+            "America/St_Johns", "Pacific/Chatham",
+    };
+
+    /** 1970 to 2040. */
+    private static final long RANGE = 2_208_988_800_000L;
+
+    @Test
+    public void format_matchesSimpleDateFormat() {
+        final Random random = new Random(42);
+        for (String zoneId : ZONES) {
+            final TimeZone zone = TimeZone.getTimeZone(zoneId);
+            for (String pattern : PATTERNS) {
+                final DateUtils.Formatter formatter = DateUtils.formatter(pattern, zone);
+                final SimpleDateFormat expected = new SimpleDateFormat(pattern, Locale.US);
+                expected.setTimeZone(zone);
+
+                long millis = 0;
+                for (int i = 0; i < 5_000; i++) {
+                    // Mostly small steps, as readings arrive, with jumps to other days.
+                    millis = i % 10 == 0 ? (long) (random.nextDouble() * RANGE)
+                            : millis + random.nextInt(2 * 60 * 60 * 1000);
+                    assertEquals(zoneId + " " + pattern + " " + millis,
+                            expected.format(new Date(millis)), formatter.format(millis));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void format_handlesOffsetTransitions() {
+        // Every minute around the 2019 transitions of Sao Paulo (midnight) and Berlin (2 AM).
+        final long[] transitions = {1550372400000L, 1553994000000L, 1572130800000L};
+        for (String zoneId : new String[]{"America/Sao_Paulo", "Europe/Berlin"}) {
+            final TimeZone zone = TimeZone.getTimeZone(zoneId);
+            final DateUtils.Formatter formatter = DateUtils.formatter("yyyy-MM-dd HH:mm:ss.SSS XXX", zone);
+            final SimpleDateFormat expected = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS XXX", Locale.US);
+            expected.setTimeZone(zone);
+            for (long transition : transitions) {
+                for (long millis = transition - 86_400_000L; millis < transition + 86_400_000L; millis += 59_999) {
+                    assertEquals(expected.format(new Date(millis)), formatter.format(millis));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void format_writesIntoCallerBuffers() {
+        final DateUtils.Formatter formatter = DateUtils.formatter(DateUtils.DATE_FORMAT_DATE_TIME,
+                TimeZone.getTimeZone("UTC"));
+
+        final StringBuilder builder = new StringBuilder("at ");
+        assertEquals("at 2020-03-01T13:20:31", formatter.format(1583068831250L, builder).toString());
+
+        final char[] chars = new char[2 + formatter.getMaxLength()];
+        final int end = formatter.format(1583068831250L, chars, 2);
+        assertEquals("2020-03-01T13:20:31", new String(chars, 2, end - 2));
+    }
+
+    @Test
+    public void format_fallsBackForTextFields() {
+        final TimeZone zone = TimeZone.getTimeZone("Europe/Berlin");
+        final String pattern = "EEE, d MMM yyyy hh:mm a z";
+        final SimpleDateFormat expected = new SimpleDateFormat(pattern, Locale.getDefault());
+        expected.setTimeZone(zone);
+
+        final DateUtils.Formatter formatter = DateUtils.formatter(pattern, zone);
+        assertEquals(-1, formatter.getMaxLength());
+        assertEquals(expected.format(new Date(1583068831250L)), formatter.format(1583068831250L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void formatter_rejectsInvalidPattern() {
+        DateUtils.formatter("yyyy-MM-dd'T", null);
+    }
+
+    @Test
+    public void format_isSafeAcrossThreads() throws Exception {
+        final TimeZone zone = TimeZone.getTimeZone("America/Sao_Paulo");
+        final DateUtils.Formatter formatter = DateUtils.formatter("yyyy-MM-dd'T'HH:mm:ss.SSSXXX", zone);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final long seed = t;
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        final SimpleDateFormat expected = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX", Locale.US);
+                        expected.setTimeZone(zone);
+                        final Random random = new Random(seed);
+                        final StringBuilder builder = new StringBuilder();
+                        int mismatches = 0;
+                        for (int i = 0; i < 20_000; i++) {
+                            // Threads keep crossing days so the cached state is replaced concurrently.
+                            final long millis = 1_550_000_000_000L + (long) (random.nextDouble() * 10 * 86_400_000L);
+                            builder.setLength(0);
+                            formatter.format(millis, builder);
+                            if (!expected.format(new Date(millis)).contentEquals(builder)) mismatches++;
+                        }
+                        return mismatches;
+                    }
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(0, (int) result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void wrappers_keepTheirFormats() {
+        assertTrue(DateUtils.getCurrentDatetime(null).matches("\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}"));
+        assertTrue(DateUtils.getCurrentDatetime("dd/MM/yyyy").matches("\\d{2}/\\d{2}/\\d{4}"));
+        assertTrue(DateUtils.getCurrentDateTimeUTC().matches("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}"));
+    }
+}
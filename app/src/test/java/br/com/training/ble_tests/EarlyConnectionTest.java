@@ -0,0 +1,93 @@
+package br.com.training.ble_tests;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of {@link EarlyConnection}.
+ */
+public class EarlyConnectionTest {
+    private static final UUID CHARACTERISTIC = GattDataPath.TEMPERATURE_MEASUREMENT;
+
+    @Test
+    public void events_beforeAttachAreDeliveredInOrder() {
+        final EarlyConnection connection = new EarlyConnection();
+        final Recorder recorder = new Recorder();
+        connection.onConnectionStateChange(null, GattClient.GATT_SUCCESS, GattClient.STATE_CONNECTED);
+        connection.onServicesDiscovered(null, GattClient.GATT_SUCCESS);
+        connection.onCharacteristicChanged(null, CHARACTERISTIC, new byte[]{1});
+        assertTrue(recorder.events.isEmpty());
+
+        connection.attach(recorder, recorder);
+        connection.onCharacteristicRead(null, CHARACTERISTIC, new byte[]{2}, GattClient.GATT_SUCCESS);
+        connection.onCharacteristicChanged(null, CHARACTERISTIC, new byte[]{3});
+
+        assertEquals(Arrays.asList("state " + GattClient.STATE_CONNECTED, "discovered", "changed 1",
+                "read 2", "changed 3"), recorder.events);
+    }
+
+    @Test
+    public void opened_beforeAttachIsHandedOverAtAttach() {
+        final EarlyConnection connection = new EarlyConnection();
+        final Recorder recorder = new Recorder();
+        connection.opened(null);
+        assertTrue(recorder.events.isEmpty());
+
+        connection.onConnectionStateChange(null, GattClient.GATT_SUCCESS, GattClient.STATE_CONNECTED);
+        connection.attach(recorder, recorder);
+
+        assertEquals(Arrays.asList("opened", "state " + GattClient.STATE_CONNECTED), recorder.events);
+    }
+
+    @Test
+    public void opened_afterAttachIsHandedOverOnce() {
+        final EarlyConnection connection = new EarlyConnection();
+        final Recorder recorder = new Recorder();
+        connection.attach(recorder, recorder);
+        assertTrue(recorder.events.isEmpty());
+
+        connection.opened(null);
+
+        assertEquals(Arrays.asList("opened"), recorder.events);
+        assertNull(recorder.client);
+    }
+
+    private static class Recorder implements GattClient.Callback, EarlyConnection.Owner {
+        final List<String> events = new ArrayList<>();
+        GattClient client;
+
+        @Override
+        public void onOpened(GattClient client) {
+            this.client = client;
+            events.add("opened");
+        }
+
+        @Override
+        public void onConnectionStateChange(GattClient client, int status, int newState) {
+            events.add("state " + newState);
+        }
+
+        @Override
+        public void onServicesDiscovered(GattClient client, int status) {
+            events.add("discovered");
+        }
+
+        @Override
+        public void onCharacteristicRead(GattClient client, UUID characteristic, byte[] value, int status) {
+            events.add("read " + value[0]);
+        }
+
+        @Override
+        public void onCharacteristicChanged(GattClient client, UUID characteristic, byte[] value) {
+            events.add("changed " + value[0]);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package br.com.training.ble_tests;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of {@link EventTracer}. The timeline rendering is tested with {@code TraceDecoder}
+ * in the benchmark module.
+ */
+public class EventTracerTest {
+    @Test
+    public void dump_keepsNewestEventsInOrder() throws IOException {
+        final EventTracer tracer = new EventTracer(8);
+        for (int i = 0; i < 20; i++) {
+            tracer.trace(EventTracer.LEVEL_INFO, EventTracer.EVENT_CHARACTERISTIC_CHANGED, 3, i, 0);
+        }
+
+        final List<long[]> events = read(tracer);
+        assertEquals(8, events.size());
+        for (int i = 0; i < 8; i++) {
+            final long[] event = events.get(i);
+            assertEquals(12 + i, event[1] & 0xFFFFFFFFL);
+            assertEquals(EventTracer.EVENT_CHARACTERISTIC_CHANGED, event[1] >>> 48);
+            assertEquals(3, event[1] >>> 32 & 0xFFFF);
+            assertEquals(12 + i, event[2]);
+        }
+    }
+
+    @Test
+    public void trace_discardsEventsBelowLevel() throws IOException {
+        final EventTracer tracer = new EventTracer(8);
+        tracer.setLevel(EventTracer.LEVEL_WARN);
+        tracer.trace(EventTracer.LEVEL_INFO, EventTracer.EVENT_DISPATCH_TEMPERATURE, 0, 366, -1);
+        tracer.trace(EventTracer.LEVEL_WARN, EventTracer.EVENT_MALFORMED, 0, 2, 0);
+
+        final List<long[]> events = read(tracer);
+        assertEquals(1, events.size());
+        assertEquals(EventTracer.EVENT_MALFORMED, events.get(0)[1] >>> 48);
+    }
+
+    @Test
+    public void dump_dropsEventsWrittenWhileReading() throws Exception {
+        final EventTracer tracer = new EventTracer(64);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            final int slot = t;
+            writers[t] = new Thread(() -> {
+                for (long value = 0; running.get(); value++) {
+                    tracer.trace(EventTracer.LEVEL_INFO, EventTracer.EVENT_DISPATCH_OTHER, slot, value, ~value);
+                }
+            });
+            writers[t].start();
+        }
+        try {
+            for (int i = 0; i < 2000; i++) {
+                for (long[] event : read(tracer)) {
+                    assertEquals(EventTracer.EVENT_DISPATCH_OTHER, event[1] >>> 48);
+                    assertEquals(~event[2], event[3]);
+                }
+            }
+        } finally {
+            running.set(false);
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+    }
+
+    @Test
+    public void crashHandler_dumpsOnlyTheLastTracer() throws IOException {
+        final File directory = Files.createTempDirectory("trace").toFile();
+        final File first = new File(directory, "first.bin");
+        final File second = new File(directory, "second.bin");
+        final EventTracer previousTracer = new EventTracer(8);
+        final EventTracer tracer = new EventTracer(8);
+        previousTracer.installCrashHandler(first);
+        tracer.installCrashHandler(second);
+        final Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+        try {
+            // A new tracer replaces the previous one instead of wrapping another handler around it.
+            previousTracer.installCrashHandler(first);
+            tracer.installCrashHandler(second);
+            assertTrue(handler == Thread.getDefaultUncaughtExceptionHandler());
+            previousTracer.uninstallCrashHandler();
+
+            tracer.trace(EventTracer.LEVEL_WARN, EventTracer.EVENT_MALFORMED, 0, 2, 0);
+            handler.uncaughtException(Thread.currentThread(), new RuntimeException());
+
+            assertFalse(first.exists());
+            assertTrue(second.length() > 0);
+        } finally {
+            tracer.uninstallCrashHandler();
+            first.delete();
+            second.delete();
+            directory.delete();
+        }
+    }
+
+    /**
+     * @return The events of a dump as {timestamp, header, a, b}, without the ones that were
+     *         overwritten or being written.
+     */
+    static List<long[]> read(EventTracer tracer) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        tracer.dump(out);
+
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(EventTracer.MAGIC, in.readLong());
+        assertEquals(EventTracer.VERSION, in.readInt());
+        assertEquals(tracer.getCapacity(), in.readInt());
+        in.readLong(); // dumped at, wall clock
+        in.readLong(); // dumped at, nanoTime
+        final long start = in.readLong();
+        final long count = in.readLong();
+
+        final List<long[]> events = new ArrayList<>();
+        for (long i = 0; i < count; i++) {
+            final long[] event = {in.readLong(), in.readLong(), in.readLong(), in.readLong()};
+            if (event[1] == EventTracer.HEADER_BUSY || (event[1] & 0xFFFFFFFFL) != ((start + i) & 0xFFFFFFFFL)) continue;
+            events.add(event);
+        }
+        return events;
+    }
+}
@@ -0,0 +1,248 @@
+package br.com.training.ble_tests;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Deterministic in-JVM stand-in for the Android GATT stack.
+ * <p>
+ * Events are kept in a virtual timeline ordered by due time and sequence number, and are
+ * delivered one by one on the thread that calls {@link #run(long, boolean)}, the same way the
+ * platform delivers every GATT callback of an app on a single binder thread. The order of the
+ * events depends only on the seeds of the {@link VirtualThermometer}s, never on wall clock.
+ */
+public class FakeGattStack implements GattClient.Factory {
+    private static final UUID SERVICE_HEALTH_THERMOMETER = UUID.fromString(GattAttributes.SERVICE_HEALTH_THERMOMETER);
+    private static final UUID CHARACTERISTIC_TEMPERATURE_MEASUREMENT = UUID.fromString(GattAttributes.CHARACTERISTIC_TEMPERATURE_MEASUREMENT);
+
+    private static final int EVENT_CONNECTED = 0;
+    private static final int EVENT_DISCONNECTED = 1;
+    private static final int EVENT_SERVICES_DISCOVERED = 2;
+    private static final int EVENT_MEASUREMENT = 3;
+
+    private final Map<String, VirtualThermometer> mDevices = new HashMap<>();
+    private final PriorityQueue<Event> mTimeline = new PriorityQueue<>();
+    private long mSequence;
+    private long mNow;
+    private long mStartNanos;
+    private long mCurrentDueNanos;
+
+    private long mConnectDelayNanos = 10_000_000L;
+    private long mDiscoveryDelayNanos = 5_000_000L;
+
+    private long mEmitted;
+    private long mDelivered;
+    private long mLost;
+
+    public void addDevice(VirtualThermometer device) {
+        mDevices.put(device.getAddress(), device);
+    }
+
+    public FakeGattStack connectDelay(long nanos) {
+        mConnectDelayNanos = nanos;
+        return this;
+    }
+
+    public FakeGattStack discoveryDelay(long nanos) {
+        mDiscoveryDelayNanos = nanos;
+        return this;
+    }
+
+    @Override
+    public GattClient open(String address, GattClient.Callback callback) {
+        final VirtualThermometer device = mDevices.get(address);
+        if (device == null) return null;
+
+        final FakeGattClient client = new FakeGattClient(device, callback);
+        client.connect();
+        schedule(mNow + device.nextIntervalNanos(), EVENT_MEASUREMENT, client);
+        return client;
+    }
+
+    /**
+     * Delivers every event due within {@code durationNanos} of virtual time.
+     *
+     * @param durationNanos Virtual time to simulate.
+     * @param paced         If true, events are delivered at their due wall clock time;
+     *                      otherwise as fast as the callbacks consume them.
+     */
+    public void run(long durationNanos, boolean paced) {
+        mStartNanos = System.nanoTime();
+        final long end = mNow + durationNanos;
+        final long origin = mNow;
+
+        Event event;
+        while ((event = mTimeline.peek()) != null && event.due <= end) {
+            mTimeline.poll();
+            mNow = event.due;
+
+            if (paced) {
+                mCurrentDueNanos = mStartNanos + (event.due - origin);
+                long wait;
+                while ((wait = mCurrentDueNanos - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            } else {
+                mCurrentDueNanos = System.nanoTime();
+            }
+            deliver(event);
+        }
+        mNow = end;
+    }
+
+    /**
+     * Wall clock time, in {@link System#nanoTime()} units, at which the event being delivered
+     * was due. Only meaningful from inside a callback.
+     *
+     * @return long
+     */
+    public long getCurrentDueNanos() {
+        return mCurrentDueNanos;
+    }
+
+    /**
+     * @return Number of measurements produced by the devices.
+     */
+    public long getEmittedCount() {
+        return mEmitted;
+    }
+
+    /**
+     * @return Number of measurements handed to the callbacks.
+     */
+    public long getDeliveredCount() {
+        return mDelivered;
+    }
+
+    /**
+     * @return Number of measurements produced while the link was down or indications were off.
+     */
+    public long getLostCount() {
+        return mLost;
+    }
+
+    private void deliver(Event event) {
+        final FakeGattClient client = event.client;
+        switch (event.type) {
+            case EVENT_CONNECTED:
+                if (client.mClosed) return;
+                client.mConnected = true;
+                client.mCallback.onConnectionStateChange(client, GattClient.GATT_SUCCESS, GattClient.STATE_CONNECTED);
+                break;
+            case EVENT_DISCONNECTED:
+                client.mCallback.onConnectionStateChange(client, GattClient.GATT_SUCCESS, GattClient.STATE_DISCONNECTED);
+                break;
+            case EVENT_SERVICES_DISCOVERED:
+                if (!client.mConnected) return;
+                client.mCallback.onServicesDiscovered(client, GattClient.GATT_SUCCESS);
+                break;
+            case EVENT_MEASUREMENT:
+                if (client.mClosed) return;
+
+                final VirtualThermometer device = client.mDevice;
+                schedule(mNow + device.nextIntervalNanos(), EVENT_MEASUREMENT, client);
+
+                final byte[] value = device.nextPacket();
+                mEmitted++;
+                if (!client.mConnected || !client.mIndicating) {
+                    mLost++;
+                    return;
+                }
+
+                mDelivered++;
+                client.mCallback.onCharacteristicChanged(client, CHARACTERISTIC_TEMPERATURE_MEASUREMENT, value);
+
+                if (device.nextDisconnect()) {
+                    client.dropLink();
+                }
+                break;
+        }
+    }
+
+    private void schedule(long due, int type, FakeGattClient client) {
+        mTimeline.add(new Event(due, mSequence++, type, client));
+    }
+
+    private static final class Event implements Comparable<Event> {
+        final long due;
+        final long sequence;
+        final int type;
+        final FakeGattClient client;
+
+        Event(long due, long sequence, int type, FakeGattClient client) {
+            this.due = due;
+            this.sequence = sequence;
+            this.type = type;
+            this.client = client;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            if (due != other.due) return due < other.due ? -1 : 1;
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final class FakeGattClient implements GattClient {
+        final VirtualThermometer mDevice;
+        final Callback mCallback;
+        boolean mConnected;
+        boolean mIndicating;
+        boolean mClosed;
+
+        FakeGattClient(VirtualThermometer device, Callback callback) {
+            mDevice = device;
+            mCallback = callback;
+        }
+
+        @Override
+        public String getAddress() {
+            return mDevice.getAddress();
+        }
+
+        @Override
+        public boolean connect() {
+            if (mClosed) return false;
+            schedule(mNow + mConnectDelayNanos, EVENT_CONNECTED, this);
+            return true;
+        }
+
+        @Override
+        public boolean discoverServices() {
+            if (!mConnected) return false;
+            schedule(mNow + mDiscoveryDelayNanos, EVENT_SERVICES_DISCOVERED, this);
+            return true;
+        }
+
+        @Override
+        public boolean setCharacteristicNotification(UUID service, UUID characteristic, byte[] descriptorValue, boolean enabled) {
+            if (!mConnected || !SERVICE_HEALTH_THERMOMETER.equals(service)
+                    || !CHARACTERISTIC_TEMPERATURE_MEASUREMENT.equals(characteristic)) {
+                return false;
+            }
+            mIndicating = enabled;
+            return true;
+        }
+
+        @Override
+        public void disconnect() {
+            if (mConnected) dropLink();
+        }
+
+        @Override
+        public void close() {
+            mConnected = false;
+            mIndicating = false;
+            mClosed = true;
+        }
+
+        void dropLink() {
+            mConnected = false;
+            mIndicating = false;
+            schedule(mNow, EVENT_DISCONNECTED, this);
+        }
+    }
+}
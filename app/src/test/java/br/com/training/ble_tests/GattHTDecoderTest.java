@@ -0,0 +1,48 @@
+package br.com.training.ble_tests;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of {@link GattHTDecoder}.
+ */
+public class GattHTDecoderTest {
+    @Test
+    public void decode_fullPacket() {
+        final byte[] packet = GattHTDecoder.encode(366, -1, false, true, true, 2020, 3, 13, 12, 5, 59);
+        final TemperatureMeasurement measurement = new TemperatureMeasurement();
+
+        assertTrue(GattHTDecoder.decode(packet, measurement));
+        assertEquals(36.6f, measurement.getTemperature(), 0f);
+        assertEquals("°C", measurement.getUnit());
+        assertEquals(2020, measurement.getYear());
+        assertEquals(3, measurement.getMonth());
+        assertEquals(59, measurement.getSeconds());
+        assertEquals(2, measurement.getType());
+    }
+
+    @Test
+    public void decode_negativeMantissa() {
+        final byte[] packet = GattHTDecoder.encode(-42, 0, true, false, false, 0, 0, 0, 0, 0, 0);
+        final TemperatureMeasurement measurement = new TemperatureMeasurement();
+
+        assertTrue(GattHTDecoder.decode(packet, measurement));
+        assertEquals(-42f, measurement.getTemperature(), 0f);
+        assertEquals("°F", measurement.getUnit());
+        assertFalse(measurement.isTimestampPresent());
+        assertEquals(TemperatureMeasurement.TYPE_NOT_PRESENT, measurement.getType());
+    }
+
+    @Test
+    public void decode_rejectsTruncatedPacket() {
+        final byte[] packet = GattHTDecoder.encode(366, -1, false, true, false, 2020, 3, 13, 12, 5, 59);
+        final byte[] truncated = new byte[packet.length - 1];
+        System.arraycopy(packet, 0, truncated, 0, truncated.length);
+
+        assertFalse(GattHTDecoder.decode(truncated, new TemperatureMeasurement()));
+        assertFalse(GattHTDecoder.decode(null, new TemperatureMeasurement()));
+    }
+}
@@ -0,0 +1,37 @@
+package br.com.training.ble_tests;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+    @Test
+    public void buckets_coverValuesWithinPrecision() {
+        for (long value = 0; value < 1_000_000L; value += 7) {
+            final int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(LatencyHistogram.lowerBoundOf(bucket) <= value);
+            assertTrue(LatencyHistogram.upperBoundOf(bucket) >= value);
+            assertTrue(LatencyHistogram.upperBoundOf(bucket) - LatencyHistogram.lowerBoundOf(bucket) <= value / 8);
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void snapshot_reportsQuantiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(1_000_000L, snapshot.getMax());
+        assertEquals(500_500.0, snapshot.getMean(), 0.0);
+        assertEquals(500_000.0, snapshot.getValueAtQuantile(0.5), 500_000 / 8.0);
+        assertEquals(990_000.0, snapshot.getValueAtQuantile(0.99), 990_000 / 8.0);
+    }
+}
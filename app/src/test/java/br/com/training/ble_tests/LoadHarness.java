@@ -0,0 +1,160 @@
+package br.com.training.ble_tests;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Drives {@link GattDataPath} with a {@link FakeGattStack} full of {@link VirtualThermometer}s
+ * and reports throughput, latency percentiles and drops.
+ * <p>
+ * The harness reacts to the GATT events the same way {@link BluetoothLeService} and
+ * {@link MainActivity} do: discover services once connected, enable indications once
+ * discovered and reconnect whenever the link drops. The values go through the
+ * {@link BroadcastListener} of the service, up to the text that would be broadcast.
+ */
+public class LoadHarness {
+    private final int mDevices;
+    private final VirtualThermometer.Config mConfig;
+    private final long mSeed;
+
+    public LoadHarness(int devices, VirtualThermometer.Config config, long seed) {
+        mDevices = devices;
+        mConfig = config;
+        mSeed = seed;
+    }
+
+    /**
+     * Runs the simulation.
+     *
+     * @param durationMillis Virtual time to simulate.
+     * @param paced          Deliver events at their wall clock time, see {@link FakeGattStack#run(long, boolean)}.
+     * @return Report
+     */
+    public Report run(long durationMillis, boolean paced) {
+        final FakeGattStack stack = new FakeGattStack();
+        final Report report = new Report(mDevices);
+        final long[] latencies = new long[1024];
+        final int[] latencyCount = new int[1];
+        final long[][] latencyBuffer = {latencies};
+
+        final GattDataPath dataPath = new GattDataPath(new BroadcastListener() {
+            @Override
+            void send(ServiceMetrics.Stream stream, String data) {
+                report.dispatched++;
+                long[] buffer = latencyBuffer[0];
+                if (latencyCount[0] == buffer.length) {
+                    buffer = latencyBuffer[0] = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                buffer[latencyCount[0]++] = System.nanoTime() - stack.getCurrentDueNanos();
+            }
+
+            @Override
+            public void onMalformed(ServiceMetrics.Stream stream, byte[] value) {
+            }
+        });
+
+        final GattClient.Callback callback = new GattClient.Callback() {
+            @Override
+            public void onConnectionStateChange(GattClient client, int status, int newState) {
+                if (newState == GattClient.STATE_CONNECTED) {
+                    report.connects++;
+                    client.discoverServices();
+                } else if (newState == GattClient.STATE_DISCONNECTED) {
+                    report.disconnects++;
+                    client.connect();
+                }
+            }
+
+            @Override
+            public void onServicesDiscovered(GattClient client, int status) {
+                client.setCharacteristicNotification(UUID.fromString(GattAttributes.SERVICE_HEALTH_THERMOMETER),
+                        GattDataPath.TEMPERATURE_MEASUREMENT, new byte[]{0x02, 0x00}, true);
+            }
+
+            @Override
+            public void onCharacteristicRead(GattClient client, UUID characteristic, byte[] value, int status) {
+                dataPath.onCharacteristicValue(client.getAddress(), characteristic, value);
+            }
+
+            @Override
+            public void onCharacteristicChanged(GattClient client, UUID characteristic, byte[] value) {
+                dataPath.onCharacteristicValue(client.getAddress(), characteristic, value);
+            }
+        };
+
+        for (int i = 0; i < mDevices; i++) {
+            final String address = String.format(Locale.US, "00:00:00:00:%02X:%02X", i >> 8 & 0xFF, i & 0xFF);
+            stack.addDevice(new VirtualThermometer(address, mConfig, mSeed * 31 + i));
+            stack.open(address, callback);
+        }
+
+        final long start = System.nanoTime();
+        stack.run(durationMillis * 1_000_000L, paced);
+        report.elapsedNanos = System.nanoTime() - start;
+
+        report.emitted = stack.getEmittedCount();
+        report.delivered = stack.getDeliveredCount();
+        report.lost = stack.getLostCount();
+        report.malformed = dataPath.getDroppedCount();
+
+        final long[] sorted = Arrays.copyOf(latencyBuffer[0], latencyCount[0]);
+        Arrays.sort(sorted);
+        report.p50Nanos = percentile(sorted, 0.50);
+        report.p90Nanos = percentile(sorted, 0.90);
+        report.p99Nanos = percentile(sorted, 0.99);
+        report.maxNanos = sorted.length == 0 ? 0 : sorted[sorted.length - 1];
+        return report;
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) return 0;
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    /**
+     * Outcome of a {@link LoadHarness} run.
+     */
+    public static class Report {
+        final int devices;
+        long connects;
+        long disconnects;
+        long emitted;
+        long delivered;
+        long dispatched;
+        long malformed;
+        long lost;
+        long elapsedNanos;
+        long p50Nanos;
+        long p90Nanos;
+        long p99Nanos;
+        long maxNanos;
+
+        Report(int devices) {
+            this.devices = devices;
+        }
+
+        /**
+         * @return Measurements dispatched per second of wall clock time.
+         */
+        double throughput() {
+            return elapsedNanos == 0 ? 0 : dispatched * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @return Measurements that never reached the listener.
+         */
+        long dropped() {
+            return lost + malformed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "devices=%d emitted=%d delivered=%d dispatched=%d dropped=%d (lost=%d malformed=%d) "
+                            + "disconnects=%d throughput=%.0f/s latency p50=%.1fus p90=%.1fus p99=%.1fus max=%.1fus",
+                    devices, emitted, delivered, dispatched, dropped(), lost, malformed, disconnects,
+                    throughput(), p50Nanos / 1e3, p90Nanos / 1e3, p99Nanos / 1e3, maxNanos / 1e3);
+        }
+    }
+}
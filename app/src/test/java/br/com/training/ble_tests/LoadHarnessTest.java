@@ -0,0 +1,72 @@
+package br.com.training.ble_tests;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Load test of the service data path against the simulated GATT stack. The report of every run
+ * is written to the file given by the {@code loadHarnessReport} system property, set by the
+ * Gradle build to {@code app/build/reports/load-harness.txt}.
+ */
+public class LoadHarnessTest {
+    private static final VirtualThermometer.Config CONFIG = new VirtualThermometer.Config()
+            .rate(10)
+            .jitter(0.2)
+            .disconnects(0.01)
+            .malformed(0.02);
+    private static final StringBuilder REPORTS = new StringBuilder();
+
+    @Test
+    public void load_scalesToThousandDevices() {
+        for (int devices : new int[]{1, 10, 100, 1000}) {
+            final LoadHarness.Report report = new LoadHarness(devices, CONFIG, 42).run(1000, true);
+            REPORTS.append("paced ").append(report).append('\n');
+
+            assertTrue(report.connects >= devices);
+            assertEquals(report.emitted, report.delivered + report.lost);
+            assertEquals(report.emitted - report.dropped(), report.dispatched);
+            assertTrue(report.dispatched > 0);
+            assertTrue(report.throughput() > 0);
+            assertTrue(report.p50Nanos > 0);
+            assertTrue(report.p50Nanos <= report.p90Nanos);
+            assertTrue(report.p90Nanos <= report.p99Nanos);
+            assertTrue(report.p99Nanos <= report.maxNanos);
+        }
+    }
+
+    @Test
+    public void load_isDeterministic() {
+        final LoadHarness.Report first = new LoadHarness(100, CONFIG, 7).run(5000, false);
+        final LoadHarness.Report second = new LoadHarness(100, CONFIG, 7).run(5000, false);
+        REPORTS.append("unpaced ").append(first).append('\n');
+
+        assertEquals(first.emitted, second.emitted);
+        assertEquals(first.dispatched, second.dispatched);
+        assertEquals(first.malformed, second.malformed);
+        assertEquals(first.lost, second.lost);
+        assertEquals(first.disconnects, second.disconnects);
+    }
+
+    @AfterClass
+    public static void writeReports() throws IOException {
+        final String path = System.getProperty("loadHarnessReport");
+        if (path == null) return;
+
+        final File file = new File(path);
+        final File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(REPORTS.toString());
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package br.com.training.ble_tests;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests of {@link MeasurementExporter}.
+ */
+public class MeasurementExporterTest {
+    private static final String ADDRESS = "1C:87:74:01:73:10";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void ndjson_writesEveryField() throws IOException {
+        final TemperatureMeasurement measurement = decode(GattHTDecoder.encode(366, -1, false,
+                true, true, 2020, 3, 1, 10, 20, 30));
+        measurement.setReceivedAt(1583068831250L);
+
+        assertEquals("{\"address\":\"1C:87:74:01:73:10\",\"temperature\":36.6,\"temperatureUnit\":\"°C\","
+                        + "\"type\":2,\"measuredAt\":\"2020-03-01T10:20:30\",\"receivedAt\":\"2020-03-01T13:20:31.250Z\"}\n",
+                export(MeasurementExporter.FORMAT_NDJSON, ADDRESS, measurement));
+    }
+
+    @Test
+    public void ndjson_writesNullForMissingFields() throws IOException {
+        final TemperatureMeasurement measurement = decode(GattHTDecoder.encode(986, -1, true,
+                false, false, 0, 0, 0, 0, 0, 0));
+
+        assertEquals("{\"address\":\"a\\\"b\\\\c\\u000A\",\"temperature\":98.6,\"temperatureUnit\":\"°F\","
+                        + "\"type\":null,\"measuredAt\":null,\"receivedAt\":null}\n",
+                export(MeasurementExporter.FORMAT_NDJSON, "a\"b\\c\n", measurement));
+    }
+
+    @Test
+    public void csv_writesHeaderAndQuotesAddress() throws IOException {
+        final TemperatureMeasurement measurement = decode(GattHTDecoder.encode(3660, -2, false,
+                false, true, 0, 0, 0, 0, 0, 0));
+
+        assertEquals(MeasurementExporter.CSV_HEADER + "\n"
+                        + "\"x,\"\"y\"\"\",36.60,°C,2,,\n",
+                export(MeasurementExporter.FORMAT_CSV, "x,\"y\"", measurement));
+    }
+
+    @Test
+    public void temperature_isTheExactDecimal() throws IOException {
+        assertEquals("36.6", temperature(366, -1));
+        assertEquals("-36.6", temperature(-366, -1));
+        assertEquals("0.005", temperature(5, -3));
+        assertEquals("-0.05", temperature(-5, -2));
+        assertEquals("0.366", temperature(366, -3));
+        assertEquals("37", temperature(37, 0));
+        assertEquals("3700", temperature(37, 2));
+        assertEquals("0", temperature(0, -5));
+        assertEquals("null", temperature(0x7FFFFF, 0));
+        assertEquals("null", temperature(-0x800000, 0));
+    }
+
+    @Test
+    public void receivedAt_matchesSimpleDateFormat() throws IOException {
+        final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        final TemperatureMeasurement measurement = decode(GattHTDecoder.encode(366, -1, false,
+                false, false, 0, 0, 0, 0, 0, 0));
+
+        final Random random = new Random(42);
+        final StringWriter out = new StringWriter();
+        final MeasurementExporter exporter = new MeasurementExporter(out, MeasurementExporter.FORMAT_CSV);
+        final StringBuilder expected = new StringBuilder(MeasurementExporter.CSV_HEADER).append('\n');
+        for (int i = 0; i < 10_000; i++) {
+            // 1970 to 2100, with runs inside the same day to exercise the cached date.
+            final long millis = i % 4 == 0 ? (long) (random.nextDouble() * 4_102_444_800_000L)
+                    : measurement.getReceivedAt() + random.nextInt(60_000);
+            measurement.setReceivedAt(Math.max(1, millis));
+            exporter.write(ADDRESS, measurement);
+            expected.append(ADDRESS).append(",36.6,°C,,,")
+                    .append(format.format(measurement.getReceivedAt())).append('\n');
+        }
+        exporter.close();
+
+        assertEquals(expected.toString(), out.toString());
+    }
+
+    @Test
+    public void gzip_roundTripsInConstantMemory() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final MeasurementExporter exporter = new MeasurementExporter(bytes, MeasurementExporter.FORMAT_NDJSON, true);
+        final TemperatureMeasurement measurement = decode(GattHTDecoder.encode(366, -1, false,
+                true, true, 2020, 3, 1, 10, 20, 30));
+        final int count = 100_000;
+        for (int i = 0; i < count; i++) {
+            measurement.setReceivedAt(1583068831250L + i);
+            exporter.write(ADDRESS, measurement);
+        }
+        exporter.close();
+        assertEquals(count, exporter.getCount());
+
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray())), "UTF-8"));
+        String line;
+        int lines = 0;
+        String last = null;
+        while ((line = reader.readLine()) != null) {
+            lines++;
+            last = line;
+        }
+        assertEquals(count, lines);
+        assertEquals("{\"address\":\"1C:87:74:01:73:10\",\"temperature\":36.6,\"temperatureUnit\":\"°C\","
+                + "\"type\":2,\"measuredAt\":\"2020-03-01T10:20:30\",\"receivedAt\":\"2020-03-01T13:22:11.249Z\"}", last);
+        assertNull(reader.readLine());
+    }
+
+    @Test
+    public void writeCapture_exportsTemperatureValuesOnly() throws IOException {
+        final File capture = folder.newFile("capture.bin");
+        final CaptureWriter writer = new CaptureWriter(capture);
+        final byte[] value = GattHTDecoder.encode(366, -1, false,
+                false, false, 0, 0, 0, 0, 0, 0);
+        writer.append(ADDRESS, GattDataPath.TEMPERATURE_MEASUREMENT, value, 0L);
+        writer.append(ADDRESS, UUID.randomUUID(), new byte[]{1}, 1_000_000L);
+        writer.append(ADDRESS, GattDataPath.TEMPERATURE_MEASUREMENT, new byte[]{0}, 2_000_000L);
+        writer.append(ADDRESS, GattDataPath.TEMPERATURE_MEASUREMENT, value, 3_000_000L);
+        writer.close();
+
+        final StringWriter out = new StringWriter();
+        final MeasurementExporter exporter = new MeasurementExporter(out, MeasurementExporter.FORMAT_CSV);
+        assertEquals(2, exporter.writeCapture(capture));
+        exporter.close();
+        assertEquals(3, out.toString().split("\n").length);
+    }
+
+    private static String temperature(int mantissa, int exponent) throws IOException {
+        final TemperatureMeasurement measurement = new TemperatureMeasurement();
+        measurement.setTemperature(mantissa, exponent, GattHTDecoder.toFloat(mantissa, exponent));
+        final String line = export(MeasurementExporter.FORMAT_NDJSON, ADDRESS, measurement);
+        final int start = line.indexOf("\"temperature\":") + "\"temperature\":".length();
+        return line.substring(start, line.indexOf(',', start));
+    }
+
+    private static String export(int format, String address, TemperatureMeasurement measurement) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final MeasurementExporter exporter = new MeasurementExporter(bytes, format, false);
+        exporter.write(address, measurement);
+        exporter.close();
+        return bytes.toString("UTF-8");
+    }
+
+    private static TemperatureMeasurement decode(byte[] value) {
+        final TemperatureMeasurement measurement = new TemperatureMeasurement();
+        GattHTDecoder.decode(value, measurement);
+        return measurement;
+    }
+}
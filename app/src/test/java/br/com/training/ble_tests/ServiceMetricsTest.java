@@ -0,0 +1,150 @@
+package br.com.training.ble_tests;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit tests of {@link ServiceMetrics}.
+ */
+public class ServiceMetricsTest {
+    private static final String DEVICE_A = "00:00:00:00:00:0A";
+    private static final String DEVICE_B = "00:00:00:00:00:0B";
+    private static final UUID OTHER = UUID.fromString("00002a1c-0000-1000-8000-00805f9b34fc");
+
+    @Test
+    public void stream_isCreatedOnceAndReused() {
+        final ServiceMetrics metrics = new ServiceMetrics();
+        final ServiceMetrics.Stream a = metrics.stream(DEVICE_A, GattDataPath.TEMPERATURE_MEASUREMENT);
+        final ServiceMetrics.Stream b = metrics.stream(DEVICE_B, GattDataPath.TEMPERATURE_MEASUREMENT);
+        final ServiceMetrics.Stream aOther = metrics.stream(DEVICE_A, OTHER);
+
+        assertSame(a, metrics.stream(DEVICE_A, GattDataPath.TEMPERATURE_MEASUREMENT));
+        assertSame(aOther, metrics.stream(DEVICE_A, OTHER));
+        assertNotSame(a, aOther);
+
+        assertEquals(0, a.getId());
+        assertEquals(1, b.getId());
+        assertEquals(2, aOther.getId());
+        assertSame(b, metrics.getStream(1));
+
+        assertEquals(a.getDeviceSlot(), aOther.getDeviceSlot());
+        assertEquals(metrics.deviceSlot(DEVICE_A), a.getDeviceSlot());
+        assertEquals(metrics.deviceSlot(DEVICE_B), b.getDeviceSlot());
+        assertEquals(2, metrics.deviceSlot("00:00:00:00:00:0C"));
+    }
+
+    @Test
+    public void stream_isCreatedOnceUnderContention() throws InterruptedException {
+        final ServiceMetrics metrics = new ServiceMetrics();
+        final ServiceMetrics.Stream[][] seen = new ServiceMetrics.Stream[8][100];
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[seen.length];
+        for (int t = 0; t < threads.length; t++) {
+            final ServiceMetrics.Stream[] streams = seen[t];
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < streams.length; i++) {
+                    streams[i] = metrics.stream("00:00:00:00:00:" + (i % 10), GattDataPath.TEMPERATURE_MEASUREMENT);
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        final Set<ServiceMetrics.Stream> distinct = new HashSet<>();
+        for (ServiceMetrics.Stream[] streams : seen) {
+            for (int i = 0; i < streams.length; i++) {
+                assertSame(seen[0][i], streams[i]);
+                distinct.add(streams[i]);
+            }
+        }
+        assertEquals(10, distinct.size());
+        for (ServiceMetrics.Stream stream : distinct) {
+            assertSame(stream, metrics.getStream(stream.getId()));
+        }
+    }
+
+    @Test
+    public void recordDisplayed_ignoresUnknownStreams() {
+        final ServiceMetrics metrics = new ServiceMetrics();
+        final ServiceMetrics.Stream stream = metrics.stream(DEVICE_A, GattDataPath.TEMPERATURE_MEASUREMENT);
+
+        metrics.recordDisplayed(-1, 1000);
+        metrics.recordDisplayed(1, 1000);
+        assertNull(metrics.getStream(-1));
+        assertNull(metrics.getStream(1));
+        assertEquals(0, metrics.snapshot().getStreams().get(0).getCounter(ServiceMetrics.COUNTER_DISPLAYED));
+
+        metrics.recordDisplayed(stream.getId(), 2000);
+        final ServiceMetrics.StreamSnapshot snapshot = metrics.snapshot().getStreams().get(0);
+        assertEquals(1, snapshot.getCounter(ServiceMetrics.COUNTER_DISPLAYED));
+        assertEquals(1, snapshot.getStage(ServiceMetrics.STAGE_DISPATCH_TO_UI).getCount());
+        assertEquals(2000, snapshot.getStage(ServiceMetrics.STAGE_DISPATCH_TO_UI).getMax());
+    }
+
+    @Test
+    public void snapshot_writesEveryStream() throws IOException {
+        final ServiceMetrics metrics = new ServiceMetrics();
+        final ServiceMetrics.Stream a = metrics.stream(DEVICE_A, GattDataPath.TEMPERATURE_MEASUREMENT);
+        metrics.stream(DEVICE_B, OTHER).increment(ServiceMetrics.COUNTER_MALFORMED);
+        a.increment(ServiceMetrics.COUNTER_RECEIVED);
+        a.increment(ServiceMetrics.COUNTER_RECEIVED);
+        a.increment(ServiceMetrics.COUNTER_DISPATCHED);
+        a.record(ServiceMetrics.STAGE_CALLBACK_TO_PARSE, 3);
+        a.record(ServiceMetrics.STAGE_CALLBACK_TO_PARSE, 5000);
+
+        final ServiceMetrics.Snapshot snapshot = metrics.snapshot();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        snapshot.writeTo(out);
+
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(1, in.readByte());
+        assertEquals(snapshot.getTakenAt(), in.readLong());
+        assertEquals(2, in.readShort());
+
+        assertEquals(DEVICE_A, in.readUTF());
+        assertEquals(GattDataPath.TEMPERATURE_MEASUREMENT, new UUID(in.readLong(), in.readLong()));
+        assertEquals(2, in.readLong());
+        assertEquals(0, in.readLong());
+        assertEquals(1, in.readLong());
+        assertEquals(0, in.readLong());
+        // callback->parse: sum, max and the two buckets recorded into
+        assertEquals(5003, in.readLong());
+        assertEquals(5000, in.readLong());
+        assertEquals(2, in.readShort());
+        assertEquals(LatencyHistogram.bucketOf(3), in.readShort());
+        assertEquals(1, in.readLong());
+        assertEquals(LatencyHistogram.bucketOf(5000), in.readShort());
+        assertEquals(1, in.readLong());
+        for (int stage = 1; stage < ServiceMetrics.STAGES; stage++) {
+            assertEquals(0, in.readLong());
+            assertEquals(0, in.readLong());
+            assertEquals(0, in.readShort());
+        }
+
+        assertEquals(DEVICE_B, in.readUTF());
+        assertEquals(OTHER, new UUID(in.readLong(), in.readLong()));
+        assertEquals(0, in.readLong());
+        assertEquals(1, in.readLong());
+    }
+}
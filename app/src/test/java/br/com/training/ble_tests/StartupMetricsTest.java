@@ -0,0 +1,76 @@
+package br.com.training.ble_tests;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of {@link StartupMetrics}.
+ */
+public class StartupMetricsTest {
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void coldStart_recordsConnectAndFirstReading() {
+        final StartupMetrics metrics = new StartupMetrics(null);
+        metrics.begin(StartupMetrics.START_COLD, 0);
+        metrics.onConnected(400 * MS);
+        metrics.onConnected(900 * MS);
+        assertTrue(metrics.onReading(1200 * MS));
+        assertFalse(metrics.onReading(1300 * MS));
+
+        final LatencyHistogram.Snapshot connect = metrics.getTimeToConnect(StartupMetrics.START_COLD);
+        assertEquals(1, connect.getCount());
+        assertTrue(connect.getMax() >= 400 * MS && connect.getMax() < 450 * MS);
+        assertEquals(1, metrics.getTimeToFirstReading(StartupMetrics.START_COLD).getCount());
+        assertEquals(0, metrics.getTimeToConnect(StartupMetrics.START_WARM).getCount());
+    }
+
+    @Test
+    public void begin_replacesTheStartInProgress() {
+        final StartupMetrics metrics = new StartupMetrics(null);
+        metrics.begin(StartupMetrics.START_COLD, 0);
+        metrics.begin(StartupMetrics.START_HOT, 100 * MS);
+        metrics.onConnected(110 * MS);
+        metrics.onConnected(500 * MS);
+
+        assertEquals(0, metrics.getTimeToConnect(StartupMetrics.START_COLD).getCount());
+        final LatencyHistogram.Snapshot connect = metrics.getTimeToConnect(StartupMetrics.START_HOT);
+        assertEquals(1, connect.getCount());
+        assertTrue(connect.getMax() < 11 * MS);
+    }
+
+    @Test
+    public void readings_withoutStartAreIgnored() {
+        final StartupMetrics metrics = new StartupMetrics(null);
+        metrics.onConnected(MS);
+        assertFalse(metrics.onReading(MS));
+
+        for (int i = 0; i < StartupMetrics.STARTS; i++) {
+            assertEquals(0, metrics.getTimeToConnect(i).getCount());
+            assertEquals(0, metrics.getTimeToFirstReading(i).getCount());
+        }
+    }
+
+    @Test
+    public void startup_isTraced() throws IOException {
+        final EventTracer tracer = new EventTracer(64);
+        final StartupMetrics metrics = new StartupMetrics(tracer);
+        metrics.begin(StartupMetrics.START_WARM, 0);
+        metrics.onConnected(250 * MS);
+        metrics.onReading(600 * MS);
+
+        final List<long[]> events = EventTracerTest.read(tracer);
+        assertEquals(2, events.size());
+        assertEquals(EventTracer.EVENT_STARTUP_CONNECTED, events.get(0)[1] >>> 48);
+        assertEquals(StartupMetrics.START_WARM, events.get(0)[2]);
+        assertEquals(250 * MS, events.get(0)[3]);
+        assertEquals(EventTracer.EVENT_STARTUP_FIRST_READING, events.get(1)[1] >>> 48);
+        assertEquals(600 * MS, events.get(1)[3]);
+    }
+}
@@ -0,0 +1,145 @@
+package br.com.training.ble_tests;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of {@link TimeSeriesRing} and {@link DeviceHistory}.
+ */
+public class TimeSeriesRingTest {
+    @Test
+    public void append_overwritesOldestWhenFull() {
+        final TimeSeriesRing ring = new TimeSeriesRing(4);
+        for (int i = 0; i < 6; i++) {
+            ring.append(1000 + i, i);
+        }
+
+        assertEquals(4, ring.size());
+        assertEquals(1002, ring.getFirstTime());
+        assertEquals(1005, ring.getLastTime());
+        assertEquals(2f, ring.getValue(0), 0f);
+        assertEquals(5f, ring.getValue(3), 0f);
+    }
+
+    @Test
+    public void append_keepsTimesSorted() {
+        final TimeSeriesRing ring = new TimeSeriesRing(4);
+        ring.append(2000, 1f);
+        ring.append(1000, 2f);
+
+        assertEquals(2000, ring.getTime(1));
+        assertEquals(2f, ring.getValue(1), 0f);
+    }
+
+    @Test
+    public void indexOf_searchesAcrossTheWrap() {
+        final TimeSeriesRing ring = new TimeSeriesRing(8);
+        for (int i = 0; i < 13; i++) {
+            ring.append(i * 10, i);
+        }
+        // Holds times 50..120, the oldest at physical index 5.
+        assertEquals(0, ring.indexOf(0));
+        assertEquals(0, ring.indexOf(50));
+        assertEquals(1, ring.indexOf(51));
+        assertEquals(5, ring.indexOf(100));
+        assertEquals(7, ring.indexOf(120));
+        assertEquals(8, ring.indexOf(121));
+    }
+
+    @Test
+    public void copy_returnsTheRange() {
+        final TimeSeriesRing ring = new TimeSeriesRing(8);
+        for (int i = 0; i < 13; i++) {
+            ring.append(i * 10, i);
+        }
+        final long[] times = new long[8];
+        final float[] values = new float[8];
+
+        assertEquals(3, ring.copy(75, 110, times, values));
+        assertEquals(80, times[0]);
+        assertEquals(100, times[2]);
+        assertEquals(10f, values[2], 0f);
+        assertEquals(0, ring.copy(200, 300, times, values));
+    }
+
+    @Test
+    public void downsample_keepsExtremesOfEveryBucket() {
+        final int size = 100_000;
+        final TimeSeriesRing ring = new TimeSeriesRing(size);
+        for (int i = 0; i < size; i++) {
+            float value = 36f + (float) Math.sin(i / 1000.0);
+            if (i == 54_321) value = 41f;
+            if (i == 77_777) value = 30f;
+            ring.append(i * 1000L, value);
+        }
+
+        final int buckets = 100;
+        final long[] times = new long[2 * buckets];
+        final float[] values = new float[2 * buckets];
+        final int count = ring.downsample(0, size * 1000L, buckets, times, values);
+
+        assertTrue(count <= 2 * buckets && count >= buckets);
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            if (i > 0) assertTrue(times[i] > times[i - 1]);
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+        }
+        assertEquals(41f, max, 0f);
+        assertEquals(30f, min, 0f);
+
+        // The bucket of the spike holds its time, so the chart draws it at the right place.
+        boolean spikeFound = false;
+        for (int i = 0; i < count; i++) {
+            spikeFound |= times[i] == 54_321_000L && values[i] == 41f;
+        }
+        assertTrue(spikeFound);
+    }
+
+    @Test
+    public void downsample_copiesSparseRanges() {
+        final TimeSeriesRing ring = new TimeSeriesRing(16);
+        for (int i = 0; i < 10; i++) {
+            ring.append(i, i);
+        }
+        final long[] times = new long[20];
+        final float[] values = new float[20];
+
+        assertEquals(10, ring.downsample(0, 10, 10, times, values));
+        assertEquals(9f, values[9], 0f);
+    }
+
+    @Test
+    public void history_storesCelsius() {
+        final DeviceHistory history = new DeviceHistory(16);
+        final TemperatureMeasurement measurement = new TemperatureMeasurement();
+        GattHTDecoder.decode(GattHTDecoder.encode(986, -1, true, false, false,
+                0, 0, 0, 0, 0, 0), measurement);
+        measurement.setReceivedAt(1000L);
+
+        history.record("1C:87:74:01:73:10", measurement);
+
+        final TimeSeriesRing ring = history.get("1C:87:74:01:73:10");
+        assertEquals(1, ring.size());
+        assertEquals(37f, ring.getValue(0), 0.001f);
+        assertEquals(0, history.get("1C:87:74:01:73:11").size());
+    }
+
+    @Test
+    public void history_skipsSpecialValues() {
+        final DeviceHistory history = new DeviceHistory(16);
+        final TemperatureMeasurement measurement = new TemperatureMeasurement();
+        for (int mantissa : new int[]{GattHTDecoder.MANTISSA_NAN, GattHTDecoder.MANTISSA_NRES,
+                GattHTDecoder.MANTISSA_POSITIVE_INFINITY, GattHTDecoder.MANTISSA_NEGATIVE_INFINITY}) {
+            GattHTDecoder.decode(GattHTDecoder.encode(mantissa, 0, false, false, false,
+                    0, 0, 0, 0, 0, 0), measurement);
+            assertTrue(measurement.isSpecial());
+            history.record("1C:87:74:01:73:10", measurement);
+        }
+
+        assertEquals(0, history.get("1C:87:74:01:73:10").size());
+    }
+}
@@ -0,0 +1,113 @@
+package br.com.training.ble_tests;
+
+import java.util.Random;
+
+/**
+ * Simulated Health Thermometer that produces Temperature Measurement indications.
+ * <p>
+ * Everything it does is driven by a seeded {@link Random}, so two thermometers built with the
+ * same address, configuration and seed emit exactly the same packets at the same intervals.
+ */
+public class VirtualThermometer {
+    /**
+     * Behaviour of a virtual thermometer.
+     */
+    public static class Config {
+        /** Indications per second. */
+        double rateHz = 1;
+        /** Maximum deviation of each interval, as a fraction of the nominal interval. */
+        double jitter = 0.1;
+        /** Probability that the link drops right after an indication. */
+        double disconnectProbability;
+        /** Probability that an indication is truncated. */
+        double malformedProbability;
+        boolean fahrenheit;
+        boolean timestampIncluded = true;
+        boolean typeIncluded = true;
+
+        public Config rate(double rateHz) {
+            this.rateHz = rateHz;
+            return this;
+        }
+
+        public Config jitter(double jitter) {
+            this.jitter = jitter;
+            return this;
+        }
+
+        public Config disconnects(double probability) {
+            this.disconnectProbability = probability;
+            return this;
+        }
+
+        public Config malformed(double probability) {
+            this.malformedProbability = probability;
+            return this;
+        }
+
+        public Config fahrenheit(boolean fahrenheit) {
+            this.fahrenheit = fahrenheit;
+            return this;
+        }
+
+        public Config timestamp(boolean included) {
+            this.timestampIncluded = included;
+            return this;
+        }
+
+        public Config type(boolean included) {
+            this.typeIncluded = included;
+            return this;
+        }
+    }
+
+    private final String mAddress;
+    private final Config mConfig;
+    private final Random mRandom;
+    private int mTemperature = 365; // tenths of degree
+
+    public VirtualThermometer(String address, Config config, long seed) {
+        mAddress = address;
+        mConfig = config;
+        mRandom = new Random(seed);
+    }
+
+    public String getAddress() {
+        return mAddress;
+    }
+
+    /**
+     * @return Delay until the next indication, in nanoseconds.
+     */
+    long nextIntervalNanos() {
+        final double nominal = 1e9 / mConfig.rateHz;
+        final double deviation = (mRandom.nextDouble() * 2 - 1) * mConfig.jitter;
+        return Math.max(1L, (long) (nominal * (1 + deviation)));
+    }
+
+    /**
+     * @return true if the link should drop after the current indication.
+     */
+    boolean nextDisconnect() {
+        return mRandom.nextDouble() < mConfig.disconnectProbability;
+    }
+
+    /**
+     * Builds the next Temperature Measurement value, occasionally truncated.
+     *
+     * @return Characteristic value
+     */
+    byte[] nextPacket() {
+        mTemperature += mRandom.nextInt(3) - 1;
+
+        final byte[] packet = GattHTDecoder.encode(mTemperature, -1, mConfig.fahrenheit,
+                mConfig.timestampIncluded, mConfig.typeIncluded, 2020, 3, 13, 12, 0, mRandom.nextInt(60));
+
+        if (mRandom.nextDouble() < mConfig.malformedProbability) {
+            final byte[] truncated = new byte[1 + mRandom.nextInt(packet.length - 1)];
+            System.arraycopy(packet, 0, truncated, 0, truncated.length);
+            return truncated;
+        }
+        return packet;
+    }
+}
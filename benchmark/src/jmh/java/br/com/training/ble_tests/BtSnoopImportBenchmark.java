@@ -0,0 +1,108 @@
+package br.com.training.ble_tests;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Import speed of {@link BtSnoopImporter} by number of threads.
+ * <p>
+ * Uses the log given by the {@code btsnoop} system property or generates a 256 MB H4 log of
+ * Temperature Measurement indications mixed with other traffic. Compare the MB/s printed by
+ * the results with the sequential read speed of the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BtSnoopImportBenchmark {
+    private static final long SYNTHETIC_SIZE = 256L * 1024 * 1024;
+    private static final int CONNECTION = 0x0040;
+    private static final int VALUE_HANDLE = 0x0012;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private File mLog;
+    private boolean mTemporary;
+
+    @Setup
+    public void setUp() throws IOException {
+        final String log = System.getProperty("btsnoop");
+        if (log != null) {
+            mLog = new File(log);
+        } else {
+            mLog = File.createTempFile("btsnoop", ".log");
+            mTemporary = true;
+            writeSyntheticLog(mLog);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (mTemporary) mLog.delete();
+    }
+
+    @Benchmark
+    public BtSnoopImporter.Result importLog() throws IOException {
+        final AtomicLong sum = new AtomicLong();
+        final BtSnoopImporter importer = new BtSnoopImporter(mLog);
+        importer.setParallelism(parallelism);
+        importer.setAttributeHandle(VALUE_HANDLE);
+        return importer.importTo(new BtSnoopImporter.Listener() {
+            @Override
+            public void onMeasurement(String address, int connectionHandle, TemperatureMeasurement measurement) {
+                sum.addAndGet(measurement.getMantissa());
+            }
+        });
+    }
+
+    private static void writeSyntheticLog(File file) throws IOException {
+        final byte[][] packets = Packets.create(Packets.MIXED);
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        try {
+            out.writeBytes("btsnoop\0");
+            out.writeInt(1);
+            out.writeInt(1002);
+
+            long timestamp = 0x00E03AB44A676000L;
+            for (int i = 0; out.size() < SYNTHETIC_SIZE; i++) {
+                timestamp += 1000;
+                final byte[] value = packets[i & (Packets.COUNT - 1)];
+                // Every other record is traffic of another characteristic.
+                final int handle = (i & 1) == 0 ? VALUE_HANDLE : VALUE_HANDLE + 8;
+                final int att = 3 + value.length;
+                final int length = 1 + 4 + 4 + att;
+
+                out.writeInt(length);
+                out.writeInt(length);
+                out.writeInt(0x01);
+                out.writeInt(0);
+                out.writeLong(timestamp);
+                out.writeByte(0x02);
+                out.writeShort(Short.reverseBytes((short) (CONNECTION | 0x2000)));
+                out.writeShort(Short.reverseBytes((short) (4 + att)));
+                out.writeShort(Short.reverseBytes((short) att));
+                out.writeShort(Short.reverseBytes((short) 0x0004));
+                out.writeByte(0x1D);
+                out.writeShort(Short.reverseBytes((short) handle));
+                out.write(value);
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
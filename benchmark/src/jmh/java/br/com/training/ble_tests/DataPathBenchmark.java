@@ -0,0 +1,48 @@
+package br.com.training.ble_tests;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of {@link GattDataPath} dispatching an indication to a listener that does nothing.
+ */
+@State(Scope.Thread)
+public class DataPathBenchmark {
+    @Param({Packets.FULL, Packets.MIXED})
+    public String mix;
+
+    private byte[][] mPackets;
+    private GattDataPath mDataPath;
+    private int mIndex;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        mPackets = Packets.create(mix);
+        mDataPath = new GattDataPath(new GattDataPath.Listener() {
+            @Override
+            public void onTemperature(ServiceMetrics.Stream stream, TemperatureMeasurement measurement) {
+                blackhole.consume(measurement);
+            }
+
+            @Override
+            public void onOtherData(ServiceMetrics.Stream stream, byte[] value) {
+                blackhole.consume(value);
+            }
+
+            @Override
+            public void onMalformed(ServiceMetrics.Stream stream, byte[] value) {
+                blackhole.consume(value);
+            }
+        });
+    }
+
+    @Benchmark
+    public void dispatch() {
+        mIndex = (mIndex + 1) & (Packets.COUNT - 1);
+        mDataPath.onCharacteristicValue("1C:87:74:01:73:10", GattDataPath.TEMPERATURE_MEASUREMENT, mPackets[mIndex]);
+    }
+}
@@ -0,0 +1,53 @@
+package br.com.training.ble_tests;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+
+/**
+ * Cost of the time stamps of {@link DateUtils} on the dispatch and export paths.
+ */
+@State(Scope.Thread)
+public class DateFormattingBenchmark {
+    private final DateUtils.Formatter mIsoFormatter = DateUtils.formatter("yyyy-MM-dd'T'HH:mm:ss.SSSXXX", null);
+    private final StringBuilder mBuilder = new StringBuilder(64);
+    private final char[] mChars = new char[mIsoFormatter.getMaxLength()];
+
+    /**
+     * {@code DateUtils#getCurrentDatetime} as it was before {@link DateUtils.Formatter}.
+     */
+    @Benchmark
+    public String currentDatetimeSimpleDateFormat() {
+        Calendar calendar = GregorianCalendar.getInstance();
+
+        DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+        return dateFormat.format(calendar.getTime());
+    }
+
+    @Benchmark
+    public String currentDatetime() {
+        return DateUtils.getCurrentDatetime(null);
+    }
+
+    @Benchmark
+    public String currentDateTimeUTC() {
+        return DateUtils.getCurrentDateTimeUTC();
+    }
+
+    @Benchmark
+    public StringBuilder formatterStringBuilder() {
+        mBuilder.setLength(0);
+        return mIsoFormatter.format(System.currentTimeMillis(), mBuilder);
+    }
+
+    @Benchmark
+    public int formatterChars() {
+        return mIsoFormatter.format(System.currentTimeMillis(), mChars, 0);
+    }
+}
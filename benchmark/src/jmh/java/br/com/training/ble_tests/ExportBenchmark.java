@@ -0,0 +1,128 @@
+package br.com.training.ble_tests;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cost per exported measurement of {@link MeasurementExporter} against building a
+ * {@code JSONObject} per measurement and writing its {@code toString()}.
+ * <p>
+ * Both paths write the same fields, with the time stamps in the same ISO-8601 form, as UTF-8 to
+ * a stream that discards the bytes, so only formatting, encoding and, with {@code gzip},
+ * compression are measured.
+ */
+@State(Scope.Thread)
+public class ExportBenchmark {
+    private static final String[] ADDRESSES = {
+            "1C:87:74:01:73:10", "1C:87:74:01:73:11", "1C:87:74:01:73:12", "1C:87:74:01:73:13"};
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    private final TemperatureMeasurement[] mMeasurements = new TemperatureMeasurement[Packets.COUNT];
+    private MeasurementExporter mNdjson;
+    private MeasurementExporter mCsv;
+    private Writer mJsonWriter;
+    private final DateFormat mReceivedAtFormat = utcFormat();
+    private final Date mDate = new Date();
+
+    @Setup
+    public void setUp() throws IOException {
+        final byte[][] packets = Packets.create(Packets.MIXED);
+        for (int i = 0; i < Packets.COUNT; i++) {
+            mMeasurements[i] = new TemperatureMeasurement();
+            GattHTDecoder.decode(packets[i], mMeasurements[i]);
+            mMeasurements[i].setReceivedAt(1583068831250L + i * 1000L);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void open() throws IOException {
+        mNdjson = new MeasurementExporter(new NullOutputStream(), MeasurementExporter.FORMAT_NDJSON, gzip);
+        mCsv = new MeasurementExporter(new NullOutputStream(), MeasurementExporter.FORMAT_CSV, gzip);
+        final OutputStream out = gzip
+                ? new GZIPOutputStream(new NullOutputStream(), 64 * 1024) : new NullOutputStream();
+        mJsonWriter = new OutputStreamWriter(out, "UTF-8");
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws IOException {
+        mNdjson.close();
+        mCsv.close();
+        mJsonWriter.close();
+    }
+
+    private static DateFormat utcFormat() {
+        final DateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Packets.COUNT)
+    public void jsonObject() throws IOException, JSONException {
+        for (int i = 0; i < Packets.COUNT; i++) {
+            final TemperatureMeasurement measurement = mMeasurements[i];
+            final JSONObject json = new JSONObject();
+            json.put("address", ADDRESSES[i & 3]);
+            json.put("temperature", measurement.getTemperature());
+            json.put("temperatureUnit", measurement.getUnit());
+            json.put("type", measurement.getType() == TemperatureMeasurement.TYPE_NOT_PRESENT
+                    ? JSONObject.NULL : measurement.getType());
+            json.put("measuredAt", measurement.isTimestampPresent()
+                    ? String.format("%04d-%02d-%02dT%02d:%02d:%02d", measurement.getYear(),
+                    measurement.getMonth(), measurement.getDay(), measurement.getHours(),
+                    measurement.getMinutes(), measurement.getSeconds())
+                    : JSONObject.NULL);
+            mDate.setTime(measurement.getReceivedAt());
+            json.put("receivedAt", mReceivedAtFormat.format(mDate));
+            mJsonWriter.write(json.toString());
+            mJsonWriter.write('\n');
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Packets.COUNT)
+    public void ndjson() throws IOException {
+        for (int i = 0; i < Packets.COUNT; i++) {
+            mNdjson.write(ADDRESSES[i & 3], mMeasurements[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Packets.COUNT)
+    public void csv() throws IOException {
+        for (int i = 0; i < Packets.COUNT; i++) {
+            mCsv.write(ADDRESSES[i & 3], mMeasurements[i]);
+        }
+    }
+
+    private static final class NullOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
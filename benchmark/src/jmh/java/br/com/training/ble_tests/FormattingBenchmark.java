@@ -0,0 +1,43 @@
+package br.com.training.ble_tests;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Cost of the hex dump of unknown characteristics done on the dispatch path. The time stamps
+ * are measured by {@link DateFormattingBenchmark}, which does not depend on the data length.
+ */
+@State(Scope.Thread)
+public class FormattingBenchmark {
+    @Param({"8", "20", "244"})
+    public int length;
+
+    private byte[] mData;
+
+    @Setup
+    public void setUp() {
+        mData = new byte[length];
+        new Random(42).nextBytes(mData);
+    }
+
+    /**
+     * Hex dump as {@code BluetoothLeService#broadcastUpdate} built it before {@link HexUtils}.
+     */
+    @Benchmark
+    public String hexStringFormat() {
+        final StringBuilder stringBuilder = new StringBuilder(mData.length);
+        for (byte byteChar : mData)
+            stringBuilder.append(String.format("%02X ", byteChar));
+        return stringBuilder.toString();
+    }
+
+    @Benchmark
+    public String hexUtils() {
+        return HexUtils.toHexString(mData);
+    }
+}
@@ -0,0 +1,39 @@
+package br.com.training.ble_tests;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Calendar;
+import java.util.UUID;
+
+/**
+ * Cost of reading the time stamp of a Temperature Measurement into a {@link Calendar}. Kept out
+ * of {@link GattParserBenchmark}, whose packet mix does not apply: every packet here has a time
+ * stamp.
+ */
+@State(Scope.Thread)
+public class GattDateTimeParserBenchmark {
+    private BluetoothGattCharacteristic[] mTimestamped;
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        final UUID uuid = UUID.fromString(GattAttributes.CHARACTERISTIC_TEMPERATURE_MEASUREMENT);
+        final byte[][] timestamped = Packets.create(Packets.TIMESTAMP);
+        mTimestamped = new BluetoothGattCharacteristic[Packets.COUNT];
+        for (int i = 0; i < Packets.COUNT; i++) {
+            mTimestamped[i] = new BluetoothGattCharacteristic(uuid, 0, 0);
+            mTimestamped[i].setValue(timestamped[i]);
+        }
+    }
+
+    @Benchmark
+    public Calendar dateTimeParser() {
+        mIndex = (mIndex + 1) & (Packets.COUNT - 1);
+        return GattDateTimeParser.parse(mTimestamped[mIndex], 5);
+    }
+}
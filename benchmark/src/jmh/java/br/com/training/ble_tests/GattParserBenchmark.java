@@ -0,0 +1,62 @@
+package br.com.training.ble_tests;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.UUID;
+
+/**
+ * Cost of decoding a Temperature Measurement indication, from the raw value to the JSON
+ * string the service broadcasts. The time stamp alone is measured by
+ * {@link GattDateTimeParserBenchmark}.
+ */
+@State(Scope.Thread)
+public class GattParserBenchmark {
+    @Param({Packets.BASIC, Packets.TIMESTAMP, Packets.TYPE, Packets.FULL, Packets.MIXED})
+    public String mix;
+
+    private byte[][] mPackets;
+    private BluetoothGattCharacteristic[] mCharacteristics;
+    private final TemperatureMeasurement mMeasurement = new TemperatureMeasurement();
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        final UUID uuid = UUID.fromString(GattAttributes.CHARACTERISTIC_TEMPERATURE_MEASUREMENT);
+        mPackets = Packets.create(mix);
+        mCharacteristics = new BluetoothGattCharacteristic[Packets.COUNT];
+        for (int i = 0; i < Packets.COUNT; i++) {
+            mCharacteristics[i] = new BluetoothGattCharacteristic(uuid, 0, 0);
+            mCharacteristics[i].setValue(mPackets[i]);
+        }
+    }
+
+    private int next() {
+        return mIndex = (mIndex + 1) & (Packets.COUNT - 1);
+    }
+
+    /**
+     * The full path used by the service before the decoder existed.
+     */
+    @Benchmark
+    public JSONObject htParser() throws JSONException {
+        return GattHTParser.parse(mCharacteristics[next()]);
+    }
+
+    @Benchmark
+    public String htParserToString() throws JSONException {
+        return GattHTParser.parse(mCharacteristics[next()]).toString();
+    }
+
+    @Benchmark
+    public boolean htDecoder() {
+        return GattHTDecoder.decode(mPackets[next()], mMeasurement);
+    }
+}
@@ -0,0 +1,52 @@
+package br.com.training.ble_tests;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.UUID;
+
+/**
+ * Cost of recording into {@link ServiceMetrics} from the notification path.
+ */
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+    private static final String ADDRESS = "1C:87:74:01:73:10";
+
+    private ServiceMetrics mMetrics;
+    private LatencyHistogram mHistogram;
+    private UUID mCharacteristic;
+
+    @Setup
+    public void setUp() {
+        mMetrics = new ServiceMetrics();
+        mHistogram = new LatencyHistogram();
+        mCharacteristic = UUID.fromString(GattAttributes.CHARACTERISTIC_TEMPERATURE_MEASUREMENT);
+        mMetrics.stream(ADDRESS, mCharacteristic);
+    }
+
+    @Benchmark
+    public void histogramRecord() {
+        mHistogram.record(12_345L);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void histogramRecordContended() {
+        mHistogram.record(12_345L);
+    }
+
+    /**
+     * Stream lookup plus everything the data path records for one notification.
+     */
+    @Benchmark
+    public void streamLookupAndRecord() {
+        final ServiceMetrics.Stream stream = mMetrics.stream(ADDRESS, mCharacteristic);
+        stream.increment(ServiceMetrics.COUNTER_RECEIVED);
+        stream.record(ServiceMetrics.STAGE_CALLBACK_TO_PARSE, 5_000L);
+        stream.record(ServiceMetrics.STAGE_PARSE_TO_DISPATCH, 20_000L);
+        stream.increment(ServiceMetrics.COUNTER_DISPATCHED);
+    }
+}
@@ -0,0 +1,65 @@
+package br.com.training.ble_tests;
+
+import java.util.Random;
+
+/**
+ * Temperature Measurement values used by the benchmarks.
+ */
+final class Packets {
+    static final String BASIC = "basic";
+    static final String TIMESTAMP = "timestamp";
+    static final String TYPE = "type";
+    static final String FULL = "full";
+    /** Field mix seen in production: 60% full, 30% timestamp only, 10% basic. */
+    static final String MIXED = "mixed";
+
+    /** Power of two so the benchmarks can cycle with a mask. */
+    static final int COUNT = 1024;
+
+    private Packets() {
+    }
+
+    /**
+     * Builds {@link #COUNT} packets of the given mix with a fixed seed.
+     *
+     * @param mix One of the constants of this class
+     * @return Packets
+     */
+    static byte[][] create(String mix) {
+        final Random random = new Random(42);
+        final byte[][] packets = new byte[COUNT][];
+        for (int i = 0; i < COUNT; i++) {
+            boolean timestamp;
+            boolean type;
+            switch (mix) {
+                case BASIC:
+                    timestamp = false;
+                    type = false;
+                    break;
+                case TIMESTAMP:
+                    timestamp = true;
+                    type = false;
+                    break;
+                case TYPE:
+                    timestamp = false;
+                    type = true;
+                    break;
+                case FULL:
+                    timestamp = true;
+                    type = true;
+                    break;
+                case MIXED:
+                    final int draw = random.nextInt(10);
+                    timestamp = draw < 9;
+                    type = draw < 6;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown packet mix: " + mix);
+            }
+            packets[i] = GattHTDecoder.encode(350 + random.nextInt(60), -1, random.nextInt(10) == 0,
+                    timestamp, type, 2020, 1 + random.nextInt(12), 1 + random.nextInt(28),
+                    random.nextInt(24), random.nextInt(60), random.nextInt(60));
+        }
+        return packets;
+    }
+}
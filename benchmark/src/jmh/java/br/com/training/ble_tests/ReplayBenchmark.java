@@ -0,0 +1,93 @@
+package br.com.training.ble_tests;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the data path driven by a capture, read from disk and replayed as fast as
+ * possible.
+ * <p>
+ * Uses the capture given by the {@code capture} system property, normally a production capture
+ * pulled from a device. Without it a synthetic capture of 100 devices sending the mixed packet
+ * set is generated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReplayBenchmark {
+    private static final int SYNTHETIC_DEVICES = 100;
+    private static final int SYNTHETIC_VALUES = 100_000;
+
+    private File mCapture;
+    private boolean mTemporary;
+    private ReplayEngine mEngine;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) throws IOException {
+        final String capture = System.getProperty("capture");
+        if (capture != null) {
+            mCapture = new File(capture);
+        } else {
+            mCapture = File.createTempFile("replay", ".bin");
+            mTemporary = true;
+            writeSyntheticCapture(mCapture);
+        }
+
+        mEngine = new ReplayEngine(new GattDataPath(new GattDataPath.Listener() {
+            @Override
+            public void onTemperature(ServiceMetrics.Stream stream, TemperatureMeasurement measurement) {
+                blackhole.consume(measurement);
+            }
+
+            @Override
+            public void onOtherData(ServiceMetrics.Stream stream, byte[] value) {
+                blackhole.consume(value);
+            }
+
+            @Override
+            public void onMalformed(ServiceMetrics.Stream stream, byte[] value) {
+                blackhole.consume(value);
+            }
+        }));
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (mTemporary) mCapture.delete();
+    }
+
+    @Benchmark
+    public ReplayEngine.Result replay() throws IOException {
+        return mEngine.replay(mCapture, ReplayEngine.AS_FAST_AS_POSSIBLE);
+    }
+
+    private static void writeSyntheticCapture(File file) throws IOException {
+        final byte[][] packets = Packets.create(Packets.MIXED);
+        final Random random = new Random(42);
+        final CaptureWriter writer = new CaptureWriter(file);
+        try {
+            long timestamp = 0;
+            for (int i = 0; i < SYNTHETIC_VALUES; i++) {
+                final int device = random.nextInt(SYNTHETIC_DEVICES);
+                timestamp += random.nextInt(20_000_000);
+                writer.append(String.format(Locale.US, "00:00:00:00:00:%02X", device),
+                        GattDataPath.TEMPERATURE_MEASUREMENT, packets[i & (Packets.COUNT - 1)], timestamp);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package br.com.training.ble_tests;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Cost of feeding a {@link TimeSeriesRing} from the data path and of the downsampling done on
+ * every redraw of {@link TemperatureChartView}, for a full day of readings.
+ */
+@State(Scope.Thread)
+public class TimeSeriesBenchmark {
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    /** Chart width in pixels. */
+    @Param({"1080"})
+    public int width;
+
+    /** Samples buffered, one day at a reading every 5 s and every 1 s. */
+    @Param({"17280", "86400"})
+    public int size;
+
+    private TimeSeriesRing mRing;
+    private long[] mTimes;
+    private float[] mValues;
+    private long mNext;
+
+    @Setup
+    public void setUp() {
+        mRing = new TimeSeriesRing(size);
+        final Random random = new Random(42);
+        final long step = DAY / size;
+        for (int i = 0; i < size; i++) {
+            mRing.append(i * step, 36f + random.nextFloat());
+        }
+        mNext = size * step;
+        mTimes = new long[2 * width];
+        mValues = new float[2 * width];
+    }
+
+    @Benchmark
+    public void append() {
+        mRing.append(mNext++, 36.6f);
+    }
+
+    @Benchmark
+    public int downsampleDay() {
+        final long to = mRing.getLastTime() + 1;
+        return mRing.downsample(to - DAY, to, width, mTimes, mValues);
+    }
+
+    @Benchmark
+    public int downsampleLastHour() {
+        final long to = mRing.getLastTime() + 1;
+        return mRing.downsample(to - DAY / 24, to, width, mTimes, mValues);
+    }
+}
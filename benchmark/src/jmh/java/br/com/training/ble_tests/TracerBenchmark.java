@@ -0,0 +1,29 @@
+package br.com.training.ble_tests;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of an {@link EventTracer} event, recorded and filtered out by level.
+ */
+@State(Scope.Benchmark)
+public class TracerBenchmark {
+    @Param({"" + EventTracer.LEVEL_INFO, "" + EventTracer.LEVEL_OFF})
+    public int level;
+
+    private EventTracer mTracer;
+
+    @Setup
+    public void setUp() {
+        mTracer = new EventTracer(16 * 1024);
+        mTracer.setLevel(level);
+    }
+
+    @Benchmark
+    public void trace() {
+        mTracer.trace(EventTracer.LEVEL_INFO, EventTracer.EVENT_DISPATCH_TEMPERATURE, 1, 366, -1);
+    }
+}
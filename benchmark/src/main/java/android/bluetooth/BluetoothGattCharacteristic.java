@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.bluetooth;
+
+import java.util.UUID;
+
+/**
+ * Host copy of the value accessors of the platform {@code BluetoothGattCharacteristic}, so the
+ * parsers of the app can be benchmarked on the JVM with the same per-field cost they have on
+ * the device.
+ */
+public class BluetoothGattCharacteristic {
+    public static final int FORMAT_UINT8 = 0x11;
+    public static final int FORMAT_UINT16 = 0x12;
+    public static final int FORMAT_UINT32 = 0x14;
+    public static final int FORMAT_SINT8 = 0x21;
+    public static final int FORMAT_SINT16 = 0x22;
+    public static final int FORMAT_SINT32 = 0x24;
+    public static final int FORMAT_SFLOAT = 0x32;
+    public static final int FORMAT_FLOAT = 0x34;
+
+    private final UUID mUuid;
+    private byte[] mValue;
+
+    public BluetoothGattCharacteristic(UUID uuid, int properties, int permissions) {
+        mUuid = uuid;
+    }
+
+    public UUID getUuid() {
+        return mUuid;
+    }
+
+    public byte[] getValue() {
+        return mValue;
+    }
+
+    public boolean setValue(byte[] value) {
+        mValue = value;
+        return true;
+    }
+
+    public Integer getIntValue(int formatType, int offset) {
+        if ((offset + getTypeLen(formatType)) > mValue.length) return null;
+
+        switch (formatType) {
+            case FORMAT_UINT8:
+                return unsignedByteToInt(mValue[offset]);
+
+            case FORMAT_UINT16:
+                return unsignedBytesToInt(mValue[offset], mValue[offset + 1]);
+
+            case FORMAT_UINT32:
+                return unsignedBytesToInt(mValue[offset], mValue[offset + 1],
+                        mValue[offset + 2], mValue[offset + 3]);
+            case FORMAT_SINT8:
+                return unsignedToSigned(unsignedByteToInt(mValue[offset]), 8);
+
+            case FORMAT_SINT16:
+                return unsignedToSigned(unsignedBytesToInt(mValue[offset],
+                        mValue[offset + 1]), 16);
+
+            case FORMAT_SINT32:
+                return unsignedToSigned(unsignedBytesToInt(mValue[offset],
+                        mValue[offset + 1], mValue[offset + 2], mValue[offset + 3]), 32);
+        }
+
+        return null;
+    }
+
+    public Float getFloatValue(int formatType, int offset) {
+        if ((offset + getTypeLen(formatType)) > mValue.length) return null;
+
+        switch (formatType) {
+            case FORMAT_SFLOAT:
+                return bytesToFloat(mValue[offset], mValue[offset + 1]);
+
+            case FORMAT_FLOAT:
+                return bytesToFloat(mValue[offset], mValue[offset + 1],
+                        mValue[offset + 2], mValue[offset + 3]);
+        }
+
+        return null;
+    }
+
+    private int getTypeLen(int formatType) {
+        return formatType & 0xF;
+    }
+
+    private int unsignedByteToInt(byte b) {
+        return b & 0xFF;
+    }
+
+    private int unsignedBytesToInt(byte b0, byte b1) {
+        return (unsignedByteToInt(b0) + (unsignedByteToInt(b1) << 8));
+    }
+
+    private int unsignedBytesToInt(byte b0, byte b1, byte b2, byte b3) {
+        return (unsignedByteToInt(b0) + (unsignedByteToInt(b1) << 8))
+                + (unsignedByteToInt(b2) << 16) + (unsignedByteToInt(b3) << 24);
+    }
+
+    private float bytesToFloat(byte b0, byte b1) {
+        int mantissa = unsignedToSigned(unsignedByteToInt(b0)
+                + ((unsignedByteToInt(b1) & 0x0F) << 8), 12);
+        int exponent = unsignedToSigned(unsignedByteToInt(b1) >> 4, 4);
+        return (float) (mantissa * Math.pow(10, exponent));
+    }
+
+    private float bytesToFloat(byte b0, byte b1, byte b2, byte b3) {
+        int mantissa = unsignedToSigned(unsignedByteToInt(b0)
+                + (unsignedByteToInt(b1) << 8)
+                + (unsignedByteToInt(b2) << 16), 24);
+        return (float) (mantissa * Math.pow(10, b3));
+    }
+
+    private int unsignedToSigned(int unsigned, int size) {
+        if ((unsigned & (1 << size - 1)) != 0) {
+            unsigned = -1 * ((1 << size - 1) - (unsigned & ((1 << size - 1) - 1)));
+        }
+        return unsigned;
+    }
+}
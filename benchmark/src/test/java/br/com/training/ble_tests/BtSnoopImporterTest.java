@@ -0,0 +1,207 @@
+package br.com.training.ble_tests;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests of {@link BtSnoopImporter} on a synthetic H4 btsnoop log.
+ */
+public class BtSnoopImporterTest {
+    private static final int CONNECTION = 0x0040;
+    private static final int VALUE_HANDLE = 0x0012;
+    private static final int OTHER_HANDLE = 0x0020;
+    private static final int READINGS = 500;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void import_decodesMeasurementsAcrossChunks() throws IOException {
+        final File log = writeLog(true);
+
+        for (int chunkSize : new int[]{64, 1024, 1024 * 1024}) {
+            final List<String> readings = Collections.synchronizedList(new ArrayList<String>());
+            final BtSnoopImporter importer = new BtSnoopImporter(log);
+            importer.setChunkSize(chunkSize);
+            importer.setParallelism(4);
+
+            final BtSnoopImporter.Result result = importer.importTo(new BtSnoopImporter.Listener() {
+                @Override
+                public void onMeasurement(String address, int connectionHandle, TemperatureMeasurement measurement) {
+                    assertEquals("1C:87:74:01:73:10", address);
+                    assertEquals(CONNECTION, connectionHandle);
+                    readings.add(measurement.getMantissa() + "@" + measurement.getReceivedAt());
+                }
+            });
+
+            assertEquals(1, result.getDiscoveredHandles());
+            assertEquals(READINGS * 2, result.getNotifications());
+            assertEquals(READINGS, result.getMeasurements());
+            assertEquals(READINGS, readings.size());
+
+            assertEquals(READINGS, new HashSet<>(readings).size());
+        }
+    }
+
+    @Test
+    public void import_usesGivenHandleWithoutDiscovery() throws IOException {
+        final File log = writeLog(false);
+        final int[] count = new int[1];
+        final BtSnoopImporter importer = new BtSnoopImporter(log);
+        importer.setAttributeHandle(VALUE_HANDLE);
+
+        final BtSnoopImporter.Result result = importer.importTo(new BtSnoopImporter.Listener() {
+            @Override
+            public synchronized void onMeasurement(String address, int connectionHandle, TemperatureMeasurement measurement) {
+                assertNull(address);
+                count[0]++;
+            }
+        });
+
+        assertEquals(0, result.getDiscoveredHandles());
+        assertEquals(READINGS, count[0]);
+    }
+
+    @Test
+    public void import_dropsPacketCutByDisconnection() throws IOException {
+        final File file = folder.newFile();
+        final DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        out.writeBytes("btsnoop\0");
+        out.writeInt(1);
+        out.writeInt(1002);
+
+        final byte[] value = GattHTDecoder.encode(366, -1, false, false, false, 0, 0, 0, 0, 0, 0);
+        final byte[] att = new byte[3 + value.length];
+        att[0] = 0x1D;
+        att[1] = (byte) VALUE_HANDLE;
+        System.arraycopy(value, 0, att, 3, value.length);
+        final byte[] frame = l2cap(att);
+        final byte[] first = new byte[7];
+        final byte[] second = new byte[frame.length - first.length];
+        System.arraycopy(frame, 0, first, 0, first.length);
+        System.arraycopy(frame, first.length, second, 0, second.length);
+
+        // The link drops after the first fragment; the continuation after it must not complete it.
+        record(out, 0, 0x02, acl(0x20, first));
+        record(out, 0, 0x04, new byte[]{0x05, 4, 0x00, (byte) CONNECTION, 0x00, 0x08});
+        record(out, 0, 0x02, acl(0x10, second));
+        record(out, 0, 0x02, acl(0x20, frame));
+        out.close();
+
+        for (int chunkSize : new int[]{24, 1024}) {
+            final BtSnoopImporter importer = new BtSnoopImporter(file);
+            importer.setChunkSize(chunkSize);
+            importer.setAttributeHandle(VALUE_HANDLE);
+            final BtSnoopImporter.Result result = importer.importTo(new BtSnoopImporter.Listener() {
+                @Override
+                public void onMeasurement(String address, int connectionHandle, TemperatureMeasurement measurement) {
+                }
+            });
+            assertEquals(1, result.getMeasurements());
+        }
+    }
+
+    @Test
+    public void main_writesTheReadings() throws IOException {
+        final File log = writeLog(false);
+        final File csv = new File(folder.getRoot(), "readings.csv");
+
+        BtSnoopImporter.main(new String[]{log.getPath(), csv.getPath(), "0x" + Integer.toHexString(VALUE_HANDLE)});
+
+        final List<String> lines = Files.readAllLines(csv.toPath(), StandardCharsets.UTF_8);
+        assertEquals(MeasurementExporter.CSV_HEADER, lines.get(0));
+        assertEquals(READINGS + 1, lines.size());
+    }
+
+    /**
+     * Connection complete, discovery of the Temperature Measurement declaration, then every
+     * reading followed by a notification of another characteristic. Every third reading is
+     * split in two ACL fragments.
+     */
+    private File writeLog(boolean withDiscovery) throws IOException {
+        final File file = folder.newFile();
+        final DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        out.writeBytes("btsnoop\0");
+        out.writeInt(1);
+        out.writeInt(1002);
+
+        long timestamp = 0x00E03AB44A676000L;
+        if (withDiscovery) {
+            record(out, timestamp, 0x04, new byte[]{0x3E, 19, 0x01, 0x00, (byte) CONNECTION, 0x00, 0x00, 0x00,
+                    0x10, 0x73, 0x01, 0x74, (byte) 0x87, 0x1C, 0, 0, 0, 0, 0, 0, 0});
+            record(out, timestamp, 0x02, acl(0x20, l2cap(new byte[]{0x09, 7,
+                    0x11, 0x00, 0x22, (byte) VALUE_HANDLE, 0x00, 0x1C, 0x2A,
+                    0x13, 0x00, 0x02, 0x14, 0x00, 0x19, 0x2A})));
+        }
+
+        for (int i = 0; i < READINGS; i++) {
+            timestamp += 1_000_000L;
+            final byte[] value = GattHTDecoder.encode(300 + i, -1, false, true, true, 2020, 3, 13, 12, 0, i % 60);
+            final byte[] att = new byte[3 + value.length];
+            att[0] = 0x1D;
+            att[1] = (byte) VALUE_HANDLE;
+            System.arraycopy(value, 0, att, 3, value.length);
+            final byte[] frame = l2cap(att);
+
+            if (i % 3 == 0) {
+                final byte[] first = new byte[7];
+                final byte[] second = new byte[frame.length - first.length];
+                System.arraycopy(frame, 0, first, 0, first.length);
+                System.arraycopy(frame, first.length, second, 0, second.length);
+                record(out, timestamp, 0x02, acl(0x20, first));
+                record(out, timestamp, 0x02, acl(0x10, second));
+            } else {
+                record(out, timestamp, 0x02, acl(0x20, frame));
+            }
+
+            record(out, timestamp, 0x02, acl(0x20, l2cap(new byte[]{0x1B, (byte) OTHER_HANDLE, 0x00, 0x55})));
+        }
+        out.close();
+        return file;
+    }
+
+    private static byte[] l2cap(byte[] att) {
+        final byte[] frame = new byte[4 + att.length];
+        frame[0] = (byte) att.length;
+        frame[2] = 0x04;
+        System.arraycopy(att, 0, frame, 4, att.length);
+        return frame;
+    }
+
+    private static byte[] acl(int boundaryFlags, byte[] data) {
+        final byte[] packet = new byte[4 + data.length];
+        packet[0] = (byte) CONNECTION;
+        packet[1] = (byte) ((CONNECTION >> 8) | boundaryFlags);
+        packet[2] = (byte) data.length;
+        System.arraycopy(data, 0, packet, 4, data.length);
+        return packet;
+    }
+
+    private static void record(DataOutputStream out, long timestamp, int type, byte[] packet) throws IOException {
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        data.write(type);
+        data.write(packet);
+        out.writeInt(data.size());
+        out.writeInt(data.size());
+        out.writeInt(0x01);
+        out.writeInt(0);
+        out.writeLong(timestamp);
+        data.writeTo(out);
+    }
+}
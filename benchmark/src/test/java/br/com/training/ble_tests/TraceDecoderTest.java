@@ -0,0 +1,85 @@
+package br.com.training.ble_tests;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of {@link TraceDecoder}.
+ */
+public class TraceDecoderTest {
+    @Test
+    public void render_writesNewestEventsInOrder() throws IOException {
+        final EventTracer tracer = new EventTracer(8);
+        for (int i = 0; i < 20; i++) {
+            tracer.trace(EventTracer.LEVEL_INFO, EventTracer.EVENT_CHARACTERISTIC_CHANGED, 3, i, 0);
+        }
+
+        final String[] lines = render(dump(tracer)).split("\n");
+        assertEquals(8, lines.length);
+        assertTrue(lines[0].contains("dev3"));
+        assertTrue(lines[0].contains("characteristic_changed"));
+        assertTrue(lines[0].endsWith("length=12"));
+        assertTrue(lines[7].endsWith("length=19"));
+    }
+
+    @Test
+    public void render_describesStartupEvents() throws IOException {
+        final EventTracer tracer = new EventTracer(64);
+        final StartupMetrics metrics = new StartupMetrics(tracer);
+        metrics.begin(StartupMetrics.START_WARM, 0);
+        metrics.onConnected(250_000_000L);
+        metrics.onReading(600_000_000L);
+
+        final String timeline = render(dump(tracer));
+        assertTrue(timeline, timeline.contains("startup_connected"));
+        assertTrue(timeline, timeline.contains("start=warm elapsed=250.000ms"));
+        assertTrue(timeline, timeline.contains("startup_first_reading"));
+    }
+
+    @Test
+    public void render_skipsBusyAndOverwrittenSlots() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final DataOutputStream data = new DataOutputStream(out);
+        data.writeLong(EventTracer.MAGIC);
+        data.writeInt(EventTracer.VERSION);
+        data.writeInt(4);
+        data.writeLong(0);
+        data.writeLong(0);
+        data.writeLong(10); // first sequence
+        data.writeLong(3);
+        writeEvent(data, (long) EventTracer.EVENT_MALFORMED << 48 | 10);
+        writeEvent(data, EventTracer.HEADER_BUSY);
+        writeEvent(data, (long) EventTracer.EVENT_MALFORMED << 48 | 8);
+
+        final String timeline = render(out.toByteArray());
+        assertEquals(1, timeline.split("\n").length);
+        assertTrue(timeline, timeline.contains("malformed"));
+    }
+
+    private static void writeEvent(DataOutputStream data, long header) throws IOException {
+        data.writeLong(0);
+        data.writeLong(header);
+        data.writeLong(2);
+        data.writeLong(0);
+    }
+
+    private static byte[] dump(EventTracer tracer) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        tracer.dump(out);
+        return out.toByteArray();
+    }
+
+    private static String render(byte[] dump) throws IOException {
+        final StringWriter timeline = new StringWriter();
+        TraceDecoder.render(new ByteArrayInputStream(dump), timeline);
+        return timeline.toString().trim();
+    }
+}
@@ -0,0 +1,661 @@
+package br.com.training.ble_tests;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Imports the Health Thermometer measurements of an Android Bluetooth HCI snoop log
+ * ({@code btsnoop_hci.log}).
+ * <p>
+ * The file is memory-mapped and walked in place: btsnoop records, HCI ACL packets, L2CAP
+ * frames and ATT PDUs are read with absolute gets on the mapped buffer and only ACL packets
+ * split in several fragments are copied to be reassembled. The file is cut into chunks of
+ * whole records that are decoded in parallel on a fork-join pool, in two passes:
+ * <ol>
+ * <li>find the LE connections and the value handles of the Temperature Measurement
+ * characteristic in the Read By Type responses of the service discovery;</li>
+ * <li>decode every Handle Value Notification and Indication sent on those handles with
+ * {@link GattHTDecoder}.</li>
+ * </ol>
+ * Logs that start after the discovery (cached GATT database) need the attribute handle to be
+ * given with {@link #setAttributeHandle(int)}.
+ * <p>
+ * Runs on a computer, {@code ./gradlew :benchmark:importBtSnoop -Pbtsnoop=btsnoop_hci.log}
+ * writes the readings of a log with {@link MeasurementExporter}.
+ */
+public class BtSnoopImporter {
+    private static final long MAGIC = 0x6274736E6F6F7000L; // "btsnoop\0"
+    private static final int FILE_HEADER_LENGTH = 16;
+    private static final int RECORD_HEADER_LENGTH = 24;
+    private static final int DATALINK_H1 = 1001;
+    private static final int DATALINK_H4 = 1002;
+    /** Microseconds between 0000-01-01 and 1970-01-01, the btsnoop time stamp origin. */
+    private static final long EPOCH_OFFSET_MICROS = 0x00DCDDB30F2F8000L;
+
+    private static final int PACKET_COMMAND = 0x01;
+    private static final int PACKET_ACL = 0x02;
+    private static final int PACKET_EVENT = 0x04;
+    private static final int EVENT_DISCONNECTION_COMPLETE = 0x05;
+    private static final int EVENT_LE_META = 0x3E;
+    private static final int SUBEVENT_CONNECTION_COMPLETE = 0x01;
+    private static final int SUBEVENT_ENHANCED_CONNECTION_COMPLETE = 0x0A;
+    private static final int PB_CONTINUING_FRAGMENT = 0x01;
+    private static final int CID_ATT = 0x0004;
+    private static final int ATT_READ_BY_TYPE_RESPONSE = 0x09;
+    private static final int ATT_HANDLE_VALUE_NOTIFICATION = 0x1B;
+    private static final int ATT_HANDLE_VALUE_INDICATION = 0x1D;
+    private static final int UUID_TEMPERATURE_MEASUREMENT = 0x2A1C;
+    /** Bluetooth base UUID with 0x2A1C, in the little endian order of ATT. */
+    private static final byte[] UUID128_TEMPERATURE_MEASUREMENT = {
+            (byte) 0xFB, 0x34, (byte) 0x9B, 0x5F, (byte) 0x80, 0x00, 0x00, (byte) 0x80,
+            0x00, 0x10, 0x00, 0x00, 0x1C, 0x2A, 0x00, 0x00};
+    private static final int MAX_CONNECTION_HANDLES = 0x1000;
+    /**
+     * How far past the end of its chunk a walker follows the fragments of a packet: the largest
+     * L2CAP frame, with room for the record headers of small fragments and for the packets of
+     * other connections sent in between.
+     */
+    private static final int MAX_LOOKAHEAD = 4 * (4 + 0xFFFF);
+
+    private final File mFile;
+    private int mChunkSize = 8 * 1024 * 1024;
+    private int mParallelism = Runtime.getRuntime().availableProcessors();
+    private int mAttributeHandle = -1;
+
+    public BtSnoopImporter(File file) {
+        mFile = file;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("usage: BtSnoopImporter <btsnoop log> <output .ndjson|.csv[.gz]> [attribute handle]");
+            System.exit(1);
+        }
+
+        final BtSnoopImporter importer = new BtSnoopImporter(new File(args[0]));
+        if (args.length == 3) importer.setAttributeHandle(Integer.decode(args[2]));
+
+        final String output = args[1];
+        final boolean gzip = output.endsWith(".gz");
+        final int format = output.replaceFirst("\\.gz$", "").endsWith(".csv")
+                ? MeasurementExporter.FORMAT_CSV : MeasurementExporter.FORMAT_NDJSON;
+        final MeasurementExporter exporter = new MeasurementExporter(new FileOutputStream(output), format, gzip);
+        final Result result;
+        try {
+            result = importer.importTo(new Listener() {
+                @Override
+                public void onMeasurement(String address, int connectionHandle, TemperatureMeasurement measurement) {
+                    synchronized (exporter) {
+                        try {
+                            // The peer of a connection made before the log started is unknown.
+                            exporter.write(address != null ? address : "", measurement);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            exporter.close();
+        }
+        System.err.println(result);
+        System.err.println("Wrote " + exporter.getCount() + " readings to " + output
+                + ", in the order the chunks were decoded; sort them by receivedAt for a timeline.");
+    }
+
+    /**
+     * Approximate size of the pieces decoded in parallel, 8 MB by default.
+     */
+    public void setChunkSize(int bytes) {
+        mChunkSize = Math.max(RECORD_HEADER_LENGTH, bytes);
+    }
+
+    /**
+     * Number of threads of the fork-join pool, the number of processors by default.
+     */
+    public void setParallelism(int parallelism) {
+        mParallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Attribute handle of the Temperature Measurement value, for logs that do not contain the
+     * service discovery. When set, notifications on this handle are decoded on any connection.
+     */
+    public void setAttributeHandle(int handle) {
+        mAttributeHandle = handle;
+    }
+
+    /**
+     * Imports the log. Blocks until every chunk is decoded.
+     *
+     * @param listener Receives the measurements, from several threads and not in file order
+     * @return Summary of the import
+     * @throws IOException if the file is not a supported btsnoop log
+     */
+    public Result importTo(final Listener listener) throws IOException {
+        final long start = System.nanoTime();
+        final RandomAccessFile file = new RandomAccessFile(mFile, "r");
+        try {
+            final FileChannel channel = file.getChannel();
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("btsnoop logs over 2 GB are not supported");
+
+            final MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (size < FILE_HEADER_LENGTH || map.getLong(0) != MAGIC) {
+                throw new IOException("Not a btsnoop log: " + mFile);
+            }
+            final int datalink = map.getInt(12);
+            if (datalink != DATALINK_H1 && datalink != DATALINK_H4) {
+                throw new IOException("Unsupported btsnoop datalink " + datalink);
+            }
+
+            final Import job = new Import(map, datalink == DATALINK_H4, listener);
+            job.split();
+
+            final ForkJoinPool pool = new ForkJoinPool(mParallelism);
+            try {
+                pool.invoke(new ChunkTask(job, Import.PASS_DISCOVERY, 0, job.mChunks.length - 1));
+                job.resolveDiscovery();
+                pool.invoke(new ChunkTask(job, Import.PASS_DECODE, 0, job.mChunks.length - 1));
+            } finally {
+                pool.shutdown();
+            }
+
+            return new Result(size, job.mRecords, job.mNotifications.get(), job.mMeasurements.get(),
+                    job.mMalformed.get(), job.mHandles.length, System.nanoTime() - start);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * State of one import, shared by the chunk tasks.
+     */
+    private final class Import {
+        static final int PASS_DISCOVERY = 0;
+        static final int PASS_DECODE = 1;
+
+        final ByteBuffer mMap;
+        final int mLimit;
+        final boolean mH4;
+        final Listener mListener;
+
+        /** Start offset of each chunk, followed by the end of the file. */
+        int[] mChunks;
+        long mRecords;
+
+        final List<long[]> mConnectionEvents = Collections.synchronizedList(new ArrayList<long[]>());
+        final List<String> mConnectionAddresses = Collections.synchronizedList(new ArrayList<String>());
+        final LongList mDeclarations = new LongList();
+
+        /** Sorted (connection handle << 16 | attribute handle) of the measurement values. */
+        long[] mHandles;
+        /** Per connection handle, record offsets and peer addresses of its connections. */
+        final int[][] mConnectionOffsets = new int[MAX_CONNECTION_HANDLES][];
+        final String[][] mConnectionPeers = new String[MAX_CONNECTION_HANDLES][];
+
+        final AtomicLong mNotifications = new AtomicLong();
+        final AtomicLong mMeasurements = new AtomicLong();
+        final AtomicLong mMalformed = new AtomicLong();
+
+        Import(ByteBuffer map, boolean h4, Listener listener) {
+            mMap = map;
+            mLimit = map.limit();
+            mH4 = h4;
+            mListener = listener;
+        }
+
+        /**
+         * Walks the record headers once to cut the file in chunks of whole records.
+         */
+        void split() {
+            final IntList chunks = new IntList();
+            int position = FILE_HEADER_LENGTH;
+            long boundary = position;
+            long records = 0;
+            while (position + RECORD_HEADER_LENGTH <= mLimit) {
+                if (position >= boundary) {
+                    chunks.add(position);
+                    boundary = (long) position + mChunkSize;
+                }
+                final long next = (long) position + RECORD_HEADER_LENGTH + (mMap.getInt(position + 4) & 0xFFFFFFFFL);
+                if (next > mLimit) break;
+                position = (int) next;
+                records++;
+            }
+            chunks.add(position);
+            mChunks = chunks.toArray();
+            mRecords = records;
+        }
+
+        void resolveDiscovery() {
+            final long[] declarations = mDeclarations.toArray();
+            Arrays.sort(declarations);
+            mHandles = declarations;
+
+            final int count = mConnectionEvents.size();
+            final Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> Long.compare(mConnectionEvents.get(a)[0], mConnectionEvents.get(b)[0]));
+
+            final int[] perHandle = new int[MAX_CONNECTION_HANDLES];
+            for (long[] event : mConnectionEvents) perHandle[(int) event[1]]++;
+            for (int handle = 0; handle < MAX_CONNECTION_HANDLES; handle++) {
+                if (perHandle[handle] == 0) continue;
+                mConnectionOffsets[handle] = new int[perHandle[handle]];
+                mConnectionPeers[handle] = new String[perHandle[handle]];
+                perHandle[handle] = 0;
+            }
+            for (Integer index : order) {
+                final long[] event = mConnectionEvents.get(index);
+                final int handle = (int) event[1];
+                mConnectionOffsets[handle][perHandle[handle]] = (int) event[0];
+                mConnectionPeers[handle][perHandle[handle]++] = mConnectionAddresses.get(index);
+            }
+        }
+
+        boolean isMeasurementHandle(final int connection, final int attribute) {
+            if (attribute == mAttributeHandle) return true;
+            return Arrays.binarySearch(mHandles, (long) connection << 16 | attribute) >= 0;
+        }
+
+        /**
+         * Peer address of the last connection established on {@code connection} before the
+         * record at {@code offset}.
+         */
+        String addressOf(final int connection, final int offset) {
+            final int[] offsets = mConnectionOffsets[connection];
+            if (offsets == null) return null;
+
+            int index = Arrays.binarySearch(offsets, offset);
+            if (index < 0) index = -index - 2;
+            return index < 0 ? null : mConnectionPeers[connection][index];
+        }
+    }
+
+    /**
+     * Decodes a range of chunks, splitting it in halves until a single chunk is left.
+     */
+    private final class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Import mJob;
+        private final int mPass;
+        private final int mFrom;
+        private final int mTo;
+
+        ChunkTask(Import job, int pass, int from, int to) {
+            mJob = job;
+            mPass = pass;
+            mFrom = from;
+            mTo = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (mTo - mFrom <= 1) {
+                if (mTo > mFrom) new ChunkWalker(mJob, mPass).walk(mJob.mChunks[mFrom], mJob.mChunks[mTo]);
+                return;
+            }
+            final int middle = (mFrom + mTo) >>> 1;
+            invokeAll(new ChunkTask(mJob, mPass, mFrom, middle), new ChunkTask(mJob, mPass, middle, mTo));
+        }
+    }
+
+    /**
+     * Walks the records of one chunk, reassembling fragmented ACL packets per connection.
+     * Fragments of a packet started in the chunk are followed past its end, up to
+     * {@link #MAX_LOOKAHEAD} bytes; fragments at the start of the chunk belong to the previous
+     * one and are skipped. A disconnection drops the packet pending on its connection.
+     */
+    private final class ChunkWalker {
+        private final Import mJob;
+        private final ByteBuffer mMap;
+        private final int mPass;
+        private final Reassembly[] mPending = new Reassembly[MAX_CONNECTION_HANDLES];
+        private int mPendingCount;
+        private final TemperatureMeasurement mMeasurement = new TemperatureMeasurement();
+        private final LongList mDeclarations = new LongList();
+
+        ChunkWalker(Import job, int pass) {
+            mJob = job;
+            mMap = job.mMap.duplicate();
+            mPass = pass;
+        }
+
+        void walk(final int start, final int end) {
+            int position = start;
+            while (position < end) {
+                position = record(position, false);
+            }
+            final long limit = Math.min(mJob.mLimit, (long) end + MAX_LOOKAHEAD);
+            while (mPendingCount > 0 && position + RECORD_HEADER_LENGTH <= limit) {
+                position = record(position, true);
+            }
+
+            if (mPass == Import.PASS_DISCOVERY) {
+                mJob.mDeclarations.addAll(mDeclarations);
+            }
+        }
+
+        private int record(final int position, final boolean lookahead) {
+            final int included = mMap.getInt(position + 4);
+            final int flags = mMap.getInt(position + 8);
+            final long timestamp = mMap.getLong(position + 16);
+            final long end = (long) position + RECORD_HEADER_LENGTH + included;
+            if (included < 0 || end > mJob.mLimit) return mJob.mLimit;
+            final int next = (int) end;
+
+            int offset = position + RECORD_HEADER_LENGTH;
+            int length = included;
+            final int type;
+            if (mJob.mH4) {
+                if (length < 1) return next;
+                type = mMap.get(offset++) & 0xFF;
+                length--;
+            } else if ((flags & 0x02) != 0) {
+                type = (flags & 0x01) != 0 ? PACKET_EVENT : PACKET_COMMAND;
+            } else {
+                type = PACKET_ACL;
+            }
+
+            if (type == PACKET_ACL) {
+                acl(position, timestamp, offset, length, lookahead);
+            } else if (type == PACKET_EVENT) {
+                event(position, offset, length, lookahead);
+            }
+            return next;
+        }
+
+        private void acl(final int record, final long timestamp, int offset, int length, final boolean lookahead) {
+            if (length < 4) return;
+            final int header = u16(mMap, offset);
+            final int handle = header & 0x0FFF;
+            final int boundary = (header >> 12) & 0x03;
+            length = Math.min(length - 4, u16(mMap, offset + 2));
+            offset += 4;
+
+            Reassembly pending = mPending[handle];
+            if (boundary == PB_CONTINUING_FRAGMENT) {
+                if (pending == null) return;
+                pending.append(mMap, offset, length);
+                if (pending.isComplete()) {
+                    finish(handle);
+                    l2cap(pending.mRecord, pending.mTimestamp, handle, ByteBuffer.wrap(pending.mData), 0, pending.mData.length);
+                }
+                return;
+            }
+
+            // A new packet: whatever was pending on this connection will never complete.
+            if (pending != null) finish(handle);
+            if (lookahead || length < 4) return;
+
+            final int total = u16(mMap, offset) + 4;
+            if (total <= length) {
+                l2cap(record, timestamp, handle, mMap, offset, total);
+            } else {
+                pending = new Reassembly(record, timestamp, total);
+                pending.append(mMap, offset, length);
+                mPending[handle] = pending;
+                mPendingCount++;
+            }
+        }
+
+        private void finish(final int handle) {
+            mPending[handle] = null;
+            mPendingCount--;
+        }
+
+        private void l2cap(final int record, final long timestamp, final int handle,
+                           final ByteBuffer buffer, final int offset, final int length) {
+            if (u16(buffer, offset + 2) != CID_ATT) return;
+
+            final int pdu = offset + 4;
+            final int pduLength = Math.min(u16(buffer, offset), length - 4);
+            if (pduLength < 1) return;
+
+            final int opcode = buffer.get(pdu) & 0xFF;
+            if (mPass == Import.PASS_DISCOVERY) {
+                if (opcode == ATT_READ_BY_TYPE_RESPONSE) readByTypeResponse(handle, buffer, pdu, pduLength);
+            } else if (opcode == ATT_HANDLE_VALUE_NOTIFICATION || opcode == ATT_HANDLE_VALUE_INDICATION) {
+                handleValue(record, timestamp, handle, buffer, pdu, pduLength);
+            }
+        }
+
+        /**
+         * Collects the value handles of Temperature Measurement characteristic declarations:
+         * attribute handle (2), properties (1), value handle (2), UUID (2 or 16).
+         */
+        private void readByTypeResponse(final int handle, final ByteBuffer buffer, final int pdu, final int length) {
+            if (length < 2) return;
+            final int entry = buffer.get(pdu + 1) & 0xFF;
+            if (entry != 7 && entry != 21) return;
+
+            for (int offset = pdu + 2; offset + entry <= pdu + length; offset += entry) {
+                final boolean measurement = entry == 7
+                        ? u16(buffer, offset + 5) == UUID_TEMPERATURE_MEASUREMENT
+                        : matches(buffer, offset + 5, UUID128_TEMPERATURE_MEASUREMENT);
+                if (measurement) {
+                    mDeclarations.add((long) handle << 16 | u16(buffer, offset + 3));
+                }
+            }
+        }
+
+        private void handleValue(final int record, final long timestamp, final int handle,
+                                 final ByteBuffer buffer, final int pdu, final int length) {
+            if (length < 3) return;
+            mJob.mNotifications.incrementAndGet();
+            if (!mJob.isMeasurementHandle(handle, u16(buffer, pdu + 1))) return;
+
+            if (!GattHTDecoder.decode(buffer, pdu + 3, length - 3, mMeasurement)) {
+                mJob.mMalformed.incrementAndGet();
+                return;
+            }
+            mMeasurement.setReceivedAt((timestamp - EPOCH_OFFSET_MICROS) / 1000);
+            mJob.mMeasurements.incrementAndGet();
+            mJob.mListener.onMeasurement(mJob.addressOf(handle, record), handle, mMeasurement);
+        }
+
+        private void event(final int record, final int offset, final int length, final boolean lookahead) {
+            if (length < 2) return;
+            final int code = mMap.get(offset) & 0xFF;
+            if (code == EVENT_DISCONNECTION_COMPLETE) {
+                // Status (1), connection handle (2), reason (1).
+                if (length < 2 + 4 || mMap.get(offset + 2) != 0) return;
+                final int handle = u16(mMap, offset + 3) & 0x0FFF;
+                if (mPending[handle] != null) finish(handle);
+                return;
+            }
+
+            if (lookahead || mPass != Import.PASS_DISCOVERY) return;
+            if (length < 2 + 1 + 1 + 2 + 1 + 1 + 6) return;
+            if (code != EVENT_LE_META) return;
+
+            final int subevent = mMap.get(offset + 2) & 0xFF;
+            if (subevent != SUBEVENT_CONNECTION_COMPLETE && subevent != SUBEVENT_ENHANCED_CONNECTION_COMPLETE) return;
+            if (mMap.get(offset + 3) != 0) return; // status
+
+            final int handle = u16(mMap, offset + 4) & 0x0FFF;
+            final int address = offset + 8;
+            final String peer = String.format(Locale.US, "%02X:%02X:%02X:%02X:%02X:%02X",
+                    mMap.get(address + 5), mMap.get(address + 4), mMap.get(address + 3),
+                    mMap.get(address + 2), mMap.get(address + 1), mMap.get(address));
+            synchronized (mJob.mConnectionEvents) {
+                mJob.mConnectionEvents.add(new long[]{record, handle});
+                mJob.mConnectionAddresses.add(peer);
+            }
+        }
+    }
+
+    /**
+     * L2CAP frame being rebuilt from ACL fragments.
+     */
+    private static final class Reassembly {
+        final int mRecord;
+        final long mTimestamp;
+        final byte[] mData;
+        int mFilled;
+
+        Reassembly(int record, long timestamp, int length) {
+            mRecord = record;
+            mTimestamp = timestamp;
+            mData = new byte[length];
+        }
+
+        void append(final ByteBuffer buffer, final int offset, final int length) {
+            final int count = Math.min(length, mData.length - mFilled);
+            for (int i = 0; i < count; i++) {
+                mData[mFilled++] = buffer.get(offset + i);
+            }
+        }
+
+        boolean isComplete() {
+            return mFilled == mData.length;
+        }
+    }
+
+    private static int u16(final ByteBuffer buffer, final int offset) {
+        return (buffer.get(offset) & 0xFF) | (buffer.get(offset + 1) & 0xFF) << 8;
+    }
+
+    private static boolean matches(final ByteBuffer buffer, final int offset, final byte[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer.get(offset + i) != expected[i]) return false;
+        }
+        return true;
+    }
+
+    private static final class IntList {
+        private int[] mValues = new int[64];
+        private int mSize;
+
+        void add(int value) {
+            if (mSize == mValues.length) mValues = Arrays.copyOf(mValues, mSize * 2);
+            mValues[mSize++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(mValues, mSize);
+        }
+    }
+
+    private static final class LongList {
+        private long[] mValues = new long[16];
+        private int mSize;
+
+        synchronized void add(long value) {
+            if (mSize == mValues.length) mValues = Arrays.copyOf(mValues, mSize * 2);
+            mValues[mSize++] = value;
+        }
+
+        synchronized void addAll(LongList other) {
+            for (long value : other.toArray()) add(value);
+        }
+
+        synchronized long[] toArray() {
+            return Arrays.copyOf(mValues, mSize);
+        }
+    }
+
+    /**
+     * Receives the imported measurements.
+     */
+    public interface Listener {
+        /**
+         * Called from the fork-join workers, concurrently and not in file order. The
+         * measurement holder is reused after the call returns; its received time is the
+         * time stamp of the HCI packet.
+         *
+         * @param address          Peer address or null if the connection was established
+         *                         before the log started
+         * @param connectionHandle HCI connection handle
+         * @param measurement      Decoded measurement
+         */
+        void onMeasurement(String address, int connectionHandle, TemperatureMeasurement measurement);
+    }
+
+    /**
+     * Summary of an import.
+     */
+    public static class Result {
+        private final long mBytes;
+        private final long mRecords;
+        private final long mNotifications;
+        private final long mMeasurements;
+        private final long mMalformed;
+        private final int mHandles;
+        private final long mElapsedNanos;
+
+        Result(long bytes, long records, long notifications, long measurements, long malformed,
+               int handles, long elapsedNanos) {
+            mBytes = bytes;
+            mRecords = records;
+            mNotifications = notifications;
+            mMeasurements = measurements;
+            mMalformed = malformed;
+            mHandles = handles;
+            mElapsedNanos = elapsedNanos;
+        }
+
+        public long getRecords() {
+            return mRecords;
+        }
+
+        /**
+         * @return Every Handle Value Notification and Indication, whatever the characteristic.
+         */
+        public long getNotifications() {
+            return mNotifications;
+        }
+
+        public long getMeasurements() {
+            return mMeasurements;
+        }
+
+        public long getMalformed() {
+            return mMalformed;
+        }
+
+        /**
+         * @return Number of Temperature Measurement value handles found in the discovery.
+         */
+        public int getDiscoveredHandles() {
+            return mHandles;
+        }
+
+        public long getElapsedNanos() {
+            return mElapsedNanos;
+        }
+
+        /**
+         * @return Megabytes of log processed per second.
+         */
+        public double getThroughput() {
+            return mElapsedNanos == 0 ? 0 : mBytes / 1e6 * 1e9 / mElapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "Result{records=%d, notifications=%d, measurements=%d, malformed=%d, "
+                            + "handles=%d, elapsed=%dms, throughput=%.1fMB/s}",
+                    mRecords, mNotifications, mMeasurements, mMalformed, mHandles,
+                    mElapsedNanos / 1_000_000L, getThroughput());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package br.com.training.ble_tests;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Renders an {@link EventTracer} dump as a timeline, one event per line.
+ * <p>
+ * Runs on a computer: {@code ./gradlew :benchmark:decodeTrace -Ptrace=trace.bin}
+ */
+public final class TraceDecoder {
+    private TraceDecoder() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: TraceDecoder <trace file>");
+            System.exit(1);
+        }
+
+        final InputStream in = new FileInputStream(args[0]);
+        try {
+            final PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out, "UTF-8"));
+            render(in, out);
+            out.flush();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the timeline of a dump.
+     *
+     * @param in  Dump written by {@link EventTracer#dump(java.io.OutputStream)}
+     * @param out Destination of the timeline
+     * @return Number of events rendered
+     * @throws IOException if the dump is not a trace or is truncated
+     */
+    public static int render(final InputStream in, final Writer out) throws IOException {
+        final DataInputStream data = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+        if (data.readLong() != EventTracer.MAGIC) throw new IOException("Not an event trace");
+        final int version = data.readInt();
+        if (version != EventTracer.VERSION) throw new IOException("Unsupported trace version " + version);
+
+        data.readInt(); // capacity
+        final long dumpedAtMillis = data.readLong();
+        final long dumpedAtNanos = data.readLong();
+        final long start = data.readLong();
+        final long count = data.readLong();
+
+        final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+        final Date date = new Date();
+        long first = 0;
+        long previous = 0;
+        int rendered = 0;
+
+        for (long i = 0; i < count; i++) {
+            final long timestamp = data.readLong();
+            final long header = data.readLong();
+            final long a = data.readLong();
+            final long b = data.readLong();
+
+            // Slot overwritten since, or being written while the ring was dumped.
+            if (header == EventTracer.HEADER_BUSY || (header & 0xFFFFFFFFL) != ((start + i) & 0xFFFFFFFFL)) continue;
+
+            if (rendered == 0) first = previous = timestamp;
+            date.setTime(dumpedAtMillis - (dumpedAtNanos - timestamp) / 1_000_000L);
+
+            final int event = (int) (header >>> 48);
+            final int slot = (int) (header >>> 32) & 0xFFFF;
+            out.write(String.format(Locale.US, "%s %+12.3fms %+10.3fms  dev%-4d %-22s %s\n",
+                    format.format(date),
+                    (timestamp - first) / 1e6,
+                    (timestamp - previous) / 1e6,
+                    slot,
+                    event < EventTracer.EVENT_NAMES.length ? EventTracer.EVENT_NAMES[event] : "event#" + event,
+                    describe(event, a, b)));
+
+            previous = timestamp;
+            rendered++;
+        }
+        return rendered;
+    }
+
+    private static String describe(final int event, final long a, final long b) {
+        switch (event) {
+            case EventTracer.EVENT_CHARACTERISTIC_CHANGED:
+            case EventTracer.EVENT_CHARACTERISTIC_READ:
+            case EventTracer.EVENT_DISPATCH_OTHER:
+            case EventTracer.EVENT_MALFORMED:
+                return "length=" + a;
+            case EventTracer.EVENT_DISPATCH_TEMPERATURE:
+                return "temperature=" + GattHTDecoder.toFloat((int) a, (int) b);
+            case EventTracer.EVENT_CAPTURE_FAILED:
+                return "captured=" + a;
+            case EventTracer.EVENT_STARTUP_CONNECTED:
+            case EventTracer.EVENT_STARTUP_FIRST_READING:
+                return String.format(Locale.US, "start=%s elapsed=%.3fms",
+                        a >= 0 && a < StartupMetrics.STARTS ? StartupMetrics.START_NAMES[(int) a] : "?", b / 1e6);
+            case EventTracer.EVENT_DISPLAYED:
+                return String.format(Locale.US, "stream=%d latency=%.3fms", a, b / 1e6);
+            default:
+                return "a=" + a + " b=" + b;
+        }
+    }
+}